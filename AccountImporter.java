@@ -0,0 +1,230 @@
+// The AccountImporter class creates staff accounts in bulk from a
+// CSV file, such as when a whole semester's staff are onboarded at
+// once. Each line holds an email, first name, last name and phone
+// number, and an optional header line naming those columns is
+// skipped.
+//
+// The file is read a chunk of lines at a time, and each chunk is
+// checked and added by its own task on the common fork-join pool,
+// while the next chunk is being read. Only a few
+// chunks are held at once, so a large file is never read into
+// memory whole. The user directory locks each of its segments
+// separately, so tasks adding accounts at the same time rarely
+// wait for each other.
+//
+// No passwords are hashed during an import, as a hash at full
+// strength takes a tenth of a second or more, which would make
+// onboarding 100k staff take hours. Instead each account is stored
+// with PasswordHasher.RESET_REQUIRED, which never matches any
+// password, and the user sets their own with Forgot Password
+// before logging in for the first time.
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+public class AccountImporter {
+    // The number of lines read from the file at a
+    // time, each of which is imported by one task.
+    private static final int CHUNK_LINES = 2048;
+
+    // Only this many problems are kept to show, so a file of
+    // bad lines doesn't fill up memory with messages.
+    static final int MAX_PROBLEMS = 100;
+
+    // The columns of each line, which a header line
+    // must name exactly, in any case.
+    static final List<String> HEADER = Arrays.asList("email", "first name", "last name", "phone");
+    private static final int COLUMNS = HEADER.size();
+
+    private final UserDirectory users;
+
+    // The AccountImporter() method is the constructor for the
+    // AccountImporter class.
+    public AccountImporter(UserDirectory users) {
+        this.users = users;
+    }
+
+    // The Result class holds how an import went.
+    static final class Result {
+        private long imported, duplicates, invalid;
+        private final List<String> problems = new ArrayList<>();
+
+        // The getImported() method returns the
+        // number of accounts added.
+        public long getImported() {
+            return this.imported;
+        }
+
+        // The getDuplicates() method returns the number of lines
+        // skipped because there was already an account with the email.
+        public long getDuplicates() {
+            return this.duplicates;
+        }
+
+        // The getInvalid() method returns the number of lines
+        // skipped because they weren't valid.
+        public long getInvalid() {
+            return this.invalid;
+        }
+
+        // The getProblems() method returns a message for each
+        // skipped line, up to MAX_PROBLEMS, in line order.
+        public List<String> getProblems() {
+            return this.problems;
+        }
+
+        private void addProblem(int lineNumber, String problem) {
+            if (problems.size() < MAX_PROBLEMS) {
+                problems.add("Line " + lineNumber + ": " + problem);
+            }
+        }
+
+        private Result merge(Result other) {
+            imported += other.imported;
+            duplicates += other.duplicates;
+            invalid += other.invalid;
+            for (String problem : other.problems) {
+                if (problems.size() < MAX_PROBLEMS) {
+                    problems.add(problem);
+                }
+            }
+            return this;
+        }
+    }
+
+    // The importFile() method adds an account for every valid line
+    // of the file, using the common fork-join pool.
+    public Result importFile(Path file) throws IOException {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        // Enough chunks to keep every thread busy while the next is read
+        int maxPending = pool.getParallelism() * 2;
+        ArrayDeque<ForkJoinTask<Result>> pending = new ArrayDeque<>();
+        Result result = new Result();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            int lineNumber = 0;
+            String line = reader.readLine();
+            if (line != null && isHeader(line)) {
+                lineNumber++;
+                line = reader.readLine();
+            }
+            while (line != null) {
+                List<String> chunk = new ArrayList<>(CHUNK_LINES);
+                int firstLineNumber = lineNumber + 1;
+                while (line != null && chunk.size() < CHUNK_LINES) {
+                    chunk.add(line);
+                    lineNumber++;
+                    line = reader.readLine();
+                }
+                if (pending.size() == maxPending) {
+                    result.merge(pending.removeFirst().join());
+                }
+                pending.addLast(pool.submit(() -> importChunk(chunk, firstLineNumber)));
+            }
+        } finally {
+            // Chunks already handed out are finished even if reading failed
+            while (!pending.isEmpty()) {
+                result.merge(pending.removeFirst().join());
+            }
+        }
+        return result;
+    }
+
+    // The isHeader() method checks whether a line is a header
+    // line, naming every column in order.
+    private static boolean isHeader(String line) {
+        List<String> fields = splitCsv(line);
+        if (fields == null || fields.size() != COLUMNS) {
+            return false;
+        }
+        for (int i = 0; i < COLUMNS; i++) {
+            if (!fields.get(i).equalsIgnoreCase(HEADER.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // The importChunk() method imports a chunk of lines, the
+    // first of which has the given line number.
+    private Result importChunk(List<String> lines, int firstLineNumber) {
+        Result result = new Result();
+        for (int i = 0; i < lines.size(); i++) {
+            importLine(lines.get(i), firstLineNumber + i, result);
+        }
+        return result;
+    }
+
+    // The importLine() method checks a single line, and adds
+    // its account if it is valid.
+    private void importLine(String line, int lineNumber, Result result) {
+        if (line.trim().isEmpty()) {
+            return;
+        }
+        List<String> fields = splitCsv(line);
+        String problem = null;
+        if (fields == null || fields.size() != COLUMNS) {
+            problem = "expected " + COLUMNS + " columns: " + String.join(", ", HEADER);
+        } else if (!Validators.isValidEmail(fields.get(0))) {
+            problem = "invalid email";
+        } else if (fields.get(1).isEmpty() || fields.get(2).isEmpty()) {
+            problem = "missing name";
+        } else if (!Validators.isValidPhone(fields.get(3))) {
+            problem = "invalid phone number";
+        }
+        if (problem != null) {
+            result.invalid++;
+            result.addProblem(lineNumber, problem);
+        } else if (users.addAccount(fields.get(0), fields.get(1), fields.get(2), fields.get(3),
+                PasswordHasher.RESET_REQUIRED)) {
+            result.imported++;
+        } else {
+            result.duplicates++;
+            result.addProblem(lineNumber, "there is already an account with that email");
+        }
+    }
+
+    // The splitCsv() method splits a CSV line into its fields,
+    // allowing fields to be quoted, with "" for a quote inside a
+    // quoted field. It returns null if a quote is never closed.
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>(COLUMNS);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            return null;
+        }
+        fields.add(field.toString().trim());
+        return fields;
+    }
+}
@@ -0,0 +1,553 @@
+// The AuditTrail class keeps a history of every change made to the
+// tickets of a service desk, so a ticket can be shown as it was at
+// any moment in the past. Rather than keeping an object for every
+// change, each change is written as a handful of bytes (the time and
+// ticket as differences from the change before it, which field
+// changed, and its old and new values) into an append-only block.
+// Full blocks are compressed and never change again.
+//
+// Every so often a ticket's whole state is written as a checkpoint,
+// and each ticket remembers which blocks hold its changes and
+// checkpoints, so rebuilding a ticket only has to read the blocks
+// from its nearest checkpoint onwards.
+//
+// A change is only added to a lock-free queue as it is made, so
+// ticket changes never wait for each other on the audit trail, even
+// from different tiers' loops. The queue is written into the blocks
+// by whichever change finds it has grown long, if no one else is
+// already doing so, and before the audit trail is read.
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+public class AuditTrail implements TicketListener {
+    // The Field enum lists the parts of a ticket
+    // which are kept in the audit trail.
+    enum Field {
+        Status,
+        Severity,
+        Technician,
+        DateCompleted,
+        Archived
+    }
+
+    private static final Field[] FIELDS = Field.values();
+
+    // The field code used for a checkpoint record,
+    // which holds the value of every field.
+    private static final int CHECKPOINT = 0x7F;
+
+    // Blocks are sealed once they hold this many bytes. No record
+    // is longer than BLOCK_SLACK, so a record started before the
+    // limit always fits in the block.
+    private static final int BLOCK_SIZE = 4096;
+    private static final int BLOCK_SLACK = 128;
+
+    // How many changes to a ticket are written
+    // between each of its checkpoints.
+    private static final int CHECKPOINT_INTERVAL = 32;
+
+    // How many changes can wait in the queue before a
+    // change tries to write them into the blocks.
+    private static final int DRAIN_THRESHOLD = 256;
+
+    // The Pending class is a change waiting in the queue.
+    private static final class Pending {
+        private final Ticket ticket;
+        private final Ticket.State oldState, newState;
+        private final long time;
+
+        private Pending(Ticket ticket, Ticket.State oldState, Ticket.State newState, long time) {
+            this.ticket = ticket;
+            this.oldState = oldState;
+            this.newState = newState;
+            this.time = time;
+        }
+    }
+
+    // The Change class is a single change to a ticket,
+    // read back out of the audit trail.
+    static final class Change {
+        private final Instant time;
+        private final Field field;
+        private final Object oldValue, newValue;
+
+        private Change(Instant time, Field field, Object oldValue, Object newValue) {
+            this.time = time;
+            this.field = field;
+            this.oldValue = oldValue;
+            this.newValue = newValue;
+        }
+
+        public Instant getTime() {
+            return this.time;
+        }
+
+        public Field getField() {
+            return this.field;
+        }
+
+        public Object getOldValue() {
+            return this.oldValue;
+        }
+
+        public Object getNewValue() {
+            return this.newValue;
+        }
+    }
+
+    // The TicketIndex class records where a single ticket's
+    // changes and checkpoints are in the audit trail.
+    private static final class TicketIndex {
+        // The blocks holding any of the ticket's records, in order
+        private int[] blocks = new int[2];
+        private int blockCount;
+        // When each checkpoint was written, and into which block
+        private long[] checkpointTimes = new long[1];
+        private int[] checkpointBlocks = new int[1];
+        private int checkpointCount;
+        private int changesSinceCheckpoint;
+
+        private void addBlock(int block) {
+            if (blockCount > 0 && blocks[blockCount - 1] == block) {
+                return;
+            }
+            if (blockCount == blocks.length) {
+                blocks = Arrays.copyOf(blocks, blockCount * 2);
+            }
+            blocks[blockCount++] = block;
+        }
+
+        private void addCheckpoint(long time, int block) {
+            if (checkpointCount == checkpointTimes.length) {
+                checkpointTimes = Arrays.copyOf(checkpointTimes, checkpointCount * 2);
+                checkpointBlocks = Arrays.copyOf(checkpointBlocks, checkpointCount * 2);
+            }
+            checkpointTimes[checkpointCount] = time;
+            checkpointBlocks[checkpointCount] = block;
+            checkpointCount++;
+            changesSinceCheckpoint = 0;
+        }
+
+        // The latestCheckpoint() method returns the last checkpoint
+        // written at or before the time, or the first checkpoint if
+        // they were all written after it.
+        private int latestCheckpoint(long time) {
+            int low = 0, high = checkpointCount - 1;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (checkpointTimes[middle] <= time) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return low;
+        }
+    }
+
+    // The sealed, compressed blocks. The block being written to
+    // is numbered sealed.size(), and the time of the first record
+    // in each block is kept in baseTimes.
+    private final List<byte[]> sealed = new ArrayList<>();
+    private long[] baseTimes = new long[16];
+    private final byte[] open = new byte[BLOCK_SIZE + BLOCK_SLACK];
+    private int openLength;
+    private long previousTime;
+    private long previousSequence;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+    // The last sealed block read back, so reading a ticket's
+    // history doesn't decompress the same block over and over.
+    private final byte[] cached = new byte[BLOCK_SIZE + BLOCK_SLACK];
+    private int cachedBlock = -1;
+    private int cachedLength;
+
+    // Tickets are indexed by their sequence number, and technicians
+    // are written as a number given to them the first time they
+    // appear, where 0 means no technician.
+    private final Map<Long, TicketIndex> tickets = new HashMap<>();
+    private final Map<User, Integer> technicianIds = new IdentityHashMap<>();
+    private final List<User> technicians = new ArrayList<>();
+    private long changeCount;
+
+    // Everything above is only used while holding the lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ConcurrentLinkedQueue<Pending> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    // The ticketStateChanged() method queues the change to be
+    // written. It is called while the ticket is locked, so each
+    // ticket's changes are queued in the order they were made.
+    @Override
+    public void ticketStateChanged(Ticket ticket, Ticket.State oldState, Ticket.State newState) {
+        pending.add(new Pending(ticket, oldState, newState, System.currentTimeMillis()));
+        // Never waits for whoever is already writing or reading
+        if (pendingCount.incrementAndGet() >= DRAIN_THRESHOLD && lock.tryLock()) {
+            try {
+                drain();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // The drain() method writes every queued change into the
+    // blocks. It must only be called while holding the lock.
+    private void drain() {
+        Pending change;
+        while ((change = pending.poll()) != null) {
+            pendingCount.decrementAndGet();
+            write(change.ticket, change.oldState, change.newState, change.time);
+        }
+    }
+
+    // The write() method writes a record of every field which
+    // differs between the old and new state. The first time a
+    // ticket changes, its state from before the change is written
+    // as a checkpoint, so its history starts from how it was created.
+    private void write(Ticket ticket, Ticket.State oldState, Ticket.State newState, long time) {
+        long sequence = ticket.getSequence();
+        // Keep the records in time order even if the clock goes back
+        long now = Math.max(time, previousTime);
+        TicketIndex index = tickets.get(sequence);
+        if (index == null) {
+            index = new TicketIndex();
+            tickets.put(sequence, index);
+            writeCheckpoint(index, sequence, now, oldState);
+        }
+        for (Field field : FIELDS) {
+            long oldValue = encode(field, oldState);
+            long newValue = encode(field, newState);
+            if (oldValue != newValue) {
+                index.addBlock(writeHeader(now, sequence));
+                open[openLength++] = (byte) field.ordinal();
+                putVarLong(oldValue);
+                putVarLong(newValue);
+                index.changesSinceCheckpoint++;
+                changeCount++;
+            }
+        }
+        if (index.changesSinceCheckpoint >= CHECKPOINT_INTERVAL) {
+            writeCheckpoint(index, sequence, now, newState);
+        }
+    }
+
+    // The stateAt() method rebuilds a ticket's state as it was at
+    // the given time, or returns null if the ticket did not exist
+    // yet. Only the audited fields are rebuilt, so the returned
+    // state has no time marked completed.
+    public Ticket.State stateAt(Ticket ticket, Instant time) {
+        if (time.isBefore(ticket.getTimeCreated())) {
+            return null;
+        }
+        lock.lock();
+        try {
+            drain();
+            return stateAtLocked(ticket, time);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Ticket.State stateAtLocked(Ticket ticket, Instant time) {
+        TicketIndex index = tickets.get(ticket.getSequence());
+        if (index == null) {
+            // It has never changed
+            return ticket.getState();
+        }
+        long millis = time.toEpochMilli();
+        int fromBlock = index.checkpointBlocks[index.latestCheckpoint(millis)];
+        long[] values = null;
+        BlockReader reader = new BlockReader();
+        for (int i = 0; i < index.blockCount; i++) {
+            int block = index.blocks[i];
+            if (block < fromBlock) {
+                continue;
+            }
+            reader.reset(block);
+            while (reader.next()) {
+                if (reader.sequence != ticket.getSequence()) {
+                    continue;
+                }
+                // The first checkpoint is used even if it is later, as
+                // it holds the state from before any change was made
+                if (reader.time > millis && values != null) {
+                    return decodeState(values);
+                }
+                if (reader.field == CHECKPOINT) {
+                    values = reader.values.clone();
+                } else if (values != null) {
+                    values[reader.field] = reader.newValue;
+                }
+            }
+        }
+        return decodeState(values);
+    }
+
+    // The getChanges() method returns every change made to a
+    // ticket, oldest first.
+    public List<Change> getChanges(Ticket ticket) {
+        lock.lock();
+        try {
+            drain();
+            return getChangesLocked(ticket);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<Change> getChangesLocked(Ticket ticket) {
+        List<Change> changes = new ArrayList<>();
+        TicketIndex index = tickets.get(ticket.getSequence());
+        if (index == null) {
+            return changes;
+        }
+        BlockReader reader = new BlockReader();
+        for (int i = 0; i < index.blockCount; i++) {
+            reader.reset(index.blocks[i]);
+            while (reader.next()) {
+                if (reader.sequence == ticket.getSequence() && reader.field != CHECKPOINT) {
+                    Field field = FIELDS[reader.field];
+                    changes.add(new Change(Instant.ofEpochMilli(reader.time), field,
+                            decode(field, reader.oldValue), decode(field, reader.newValue)));
+                }
+            }
+        }
+        return changes;
+    }
+
+    // The getChangeCount() method returns the number
+    // of changes held in the audit trail.
+    public long getChangeCount() {
+        lock.lock();
+        try {
+            drain();
+            return this.changeCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The getStoredBytes() method returns how many bytes the
+    // audit trail is using to store its records.
+    public long getStoredBytes() {
+        lock.lock();
+        try {
+            drain();
+            long bytes = openLength;
+            for (byte[] block : sealed) {
+                bytes += block.length;
+            }
+            return bytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void writeCheckpoint(TicketIndex index, long sequence, long now, Ticket.State state) {
+        int block = writeHeader(now, sequence);
+        open[openLength++] = (byte) CHECKPOINT;
+        for (Field field : FIELDS) {
+            putVarLong(encode(field, state));
+        }
+        index.addBlock(block);
+        index.addCheckpoint(now, block);
+    }
+
+    // The writeHeader() method starts a new record, sealing the
+    // open block first if it is full, and returns the number of
+    // the block the record is written to.
+    private int writeHeader(long now, long sequence) {
+        if (openLength >= BLOCK_SIZE) {
+            seal();
+        }
+        int block = sealed.size();
+        if (openLength == 0) {
+            if (block == baseTimes.length) {
+                baseTimes = Arrays.copyOf(baseTimes, block * 2);
+            }
+            baseTimes[block] = now;
+            previousTime = now;
+            previousSequence = 0;
+        }
+        putVarLong(now - previousTime);
+        putVarLong(zigZag(sequence - previousSequence));
+        previousTime = now;
+        previousSequence = sequence;
+        return block;
+    }
+
+    private void seal() {
+        deflater.reset();
+        deflater.setInput(open, 0, openLength);
+        deflater.finish();
+        byte[] buffer = new byte[openLength + 64];
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            length += deflater.deflate(buffer, length, buffer.length - length);
+        }
+        sealed.add(Arrays.copyOf(buffer, length));
+        openLength = 0;
+    }
+
+    private void putVarLong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            open[openLength++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        open[openLength++] = (byte) value;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // The encode() method returns a field's value in a state as a
+    // number, where 0 always means the field has no value.
+    private long encode(Field field, Ticket.State state) {
+        switch (field) {
+            case Status:
+                return state.ticketStatus == null ? 0 : state.ticketStatus.ordinal() + 1;
+            case Severity:
+                return state.severity == null ? 0 : state.severity.ordinal() + 1;
+            case Technician:
+                if (state.assignedTechnician == null) {
+                    return 0;
+                }
+                Integer id = technicianIds.get(state.assignedTechnician);
+                if (id == null) {
+                    technicians.add(state.assignedTechnician);
+                    id = technicians.size();
+                    technicianIds.put(state.assignedTechnician, id);
+                }
+                return id;
+            case DateCompleted:
+                return state.dateCompleted == null ? 0 : zigZag(state.dateCompleted.toEpochDay()) + 1;
+            case Archived:
+                return state.archived ? 1 : 0;
+        }
+        throw new IllegalArgumentException("Unknown field " + field);
+    }
+
+    private Object decode(Field field, long value) {
+        if (value == 0 && field != Field.Archived) {
+            return null;
+        }
+        switch (field) {
+            case Status:
+                return Ticket.TicketStatus.values()[(int) value - 1];
+            case Severity:
+                return Ticket.Severity.values()[(int) value - 1];
+            case Technician:
+                return technicians.get((int) value - 1);
+            case DateCompleted:
+                return LocalDate.ofEpochDay(unZigZag(value - 1));
+            case Archived:
+                return value != 0;
+        }
+        throw new IllegalArgumentException("Unknown field " + field);
+    }
+
+    private Ticket.State decodeState(long[] values) {
+        return new Ticket.State(
+                (Ticket.Severity) decode(Field.Severity, values[Field.Severity.ordinal()]),
+                (Ticket.TicketStatus) decode(Field.Status, values[Field.Status.ordinal()]),
+                (LocalDate) decode(Field.DateCompleted, values[Field.DateCompleted.ordinal()]),
+                (Boolean) decode(Field.Archived, values[Field.Archived.ordinal()]),
+                (User) decode(Field.Technician, values[Field.Technician.ordinal()]),
+                null);
+    }
+
+    // The BlockReader class reads the records of a block back one
+    // at a time. It must only be used while holding the lock.
+    private final class BlockReader {
+        private byte[] data;
+        private int position, limit;
+        private long time, sequence;
+        private int field;
+        private long oldValue, newValue;
+        private final long[] values = new long[FIELDS.length];
+
+        private void reset(int block) {
+            if (block == sealed.size()) {
+                data = open;
+                limit = openLength;
+            } else {
+                data = cached;
+                limit = inflate(block);
+            }
+            position = 0;
+            time = baseTimes[block];
+            sequence = 0;
+        }
+
+        private boolean next() {
+            if (position >= limit) {
+                return false;
+            }
+            time += getVarLong();
+            sequence += unZigZag(getVarLong());
+            field = data[position++];
+            if (field == CHECKPOINT) {
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = getVarLong();
+                }
+            } else {
+                oldValue = getVarLong();
+                newValue = getVarLong();
+            }
+            return true;
+        }
+
+        private long getVarLong() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[position++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+
+    // The inflate() method decompresses a sealed block into the
+    // cache, unless it is already there, and returns its length.
+    private int inflate(int block) {
+        if (cachedBlock == block) {
+            return cachedLength;
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(sealed.get(block));
+            cachedLength = inflater.inflate(cached);
+            cachedBlock = block;
+            return cachedLength;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Audit block " + block + " is corrupt", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+// The CommandRing class is a bounded ring buffer which any number of
+// threads can put commands into, and a single thread takes them out
+// of, without any locks. Each slot has a sequence number which tells
+// whose turn it is: a producer claims the next free slot by moving
+// the tail along with a compare-and-set, fills the slot, and then
+// moves the slot's sequence on to hand it to the consumer, who empties
+// it and moves the sequence on again, ready for the next lap.
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+public class CommandRing<T> {
+    private final int mask;
+    private final AtomicReferenceArray<T> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+
+    // Only ever changed by the single consumer.
+    private long head;
+
+    // The CommandRing() method is the constructor for the
+    // CommandRing class. The capacity is rounded up to a
+    // power of two, so a position can be turned into a slot
+    // with a mask rather than a division.
+    public CommandRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    // The offer() method adds a command, and returns false
+    // straight away if the ring is full. It can be called by
+    // any number of threads at once.
+    public boolean offer(T command) {
+        while (true) {
+            long position = tail.get();
+            int slot = (int) position & mask;
+            long difference = sequences.get(slot) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots.lazySet(slot, command);
+                    sequences.lazySet(slot, position + 1);
+                    return true;
+                }
+            } else if (difference < 0) {
+                // The consumer hasn't emptied this slot from the last lap
+                return false;
+            }
+            // Another producer claimed the slot first, so try the next
+        }
+    }
+
+    // The drain() method hands up to max commands to the action,
+    // in the order they were added, and returns how many there
+    // were. It must only be called by the single consumer.
+    public int drain(Consumer<T> action, int max) {
+        int drained = 0;
+        while (drained < max) {
+            int slot = (int) head & mask;
+            if (sequences.get(slot) != head + 1) {
+                // The next command hasn't been added yet
+                break;
+            }
+            T command = slots.get(slot);
+            slots.lazySet(slot, null);
+            sequences.lazySet(slot, head + mask + 1);
+            head++;
+            drained++;
+            action.accept(command);
+        }
+        return drained;
+    }
+
+    // The isEmpty() method checks whether there are no
+    // commands waiting. It must only be called by the
+    // single consumer.
+    public boolean isEmpty() {
+        return sequences.get((int) head & mask) != head + 1;
+    }
+
+    // The capacity() method returns the most commands
+    // the ring can hold at once.
+    public int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,200 @@
+// The CredentialVerifier class checks passwords when users log in.
+// Checking a password hash is deliberately slow, so the checks are
+// done on a pool of worker threads with a bounded queue, rather than
+// on whatever thread asked. A burst of logins can then only ever use
+// the pool's threads, leaving the rest of the machine free for
+// working on tickets, and logins beyond what the queue can hold are
+// turned away as busy instead of piling up.
+//
+// When a user's stored password needs upgrading, such as one hashed
+// with fewer iterations than are used now, it is rehashed after they
+// have been let in, on a separate background thread, so the upgrade
+// never slows down the login itself.
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class CredentialVerifier {
+    // The Result enum is used to tell the outcome of
+    // a login, either the password was Accepted or
+    // Rejected, or the pool was too Busy to check it.
+    enum Result {
+        Accepted,
+        Rejected,
+        Busy
+    }
+
+    private final PasswordHasher hasher;
+    private final ThreadPoolExecutor pool;
+    private final ExecutorService rehasher;
+    private final long timeoutMillis;
+
+    // Checked against when there is no such user, so a login
+    // for an unknown email takes as long as any other.
+    private final String unknownUserHash;
+
+    // The time each login took, including waiting for the
+    // pool, in microseconds.
+    private final ResolutionHistogram latency = new ResolutionHistogram();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong busy = new AtomicLong();
+    private final AtomicLong rehashed = new AtomicLong();
+
+    // The CredentialVerifier() method is the constructor for the
+    // CredentialVerifier class. The pool has the given number of
+    // threads, and holds up to queueCapacity logins waiting for
+    // a thread, each of which waits at most the timeout.
+    public CredentialVerifier(PasswordHasher hasher, int threads, int queueCapacity, Duration timeout) {
+        this.hasher = hasher;
+        this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new DaemonThreadFactory("sentinel-login"),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.rehasher = Executors.newSingleThreadExecutor(new DaemonThreadFactory("sentinel-rehash"));
+        this.timeoutMillis = timeout.toMillis();
+        this.unknownUserHash = hasher.hash("unknown user");
+    }
+
+    // The verify() method checks a user's password on the pool, and
+    // waits for the answer. The user may be null, if there is no
+    // account with the email given.
+    public Result verify(User user, String password) {
+        long start = System.nanoTime();
+        String stored = user == null ? unknownUserHash : user.getPasswordHash();
+        Boolean matches = check(password, stored);
+        Result result;
+        if (matches == null) {
+            result = Result.Busy;
+            busy.incrementAndGet();
+        } else if (matches && user != null) {
+            result = Result.Accepted;
+            accepted.incrementAndGet();
+            if (hasher.needsRehash(stored)) {
+                scheduleRehash(user, stored, password);
+            }
+        } else {
+            result = Result.Rejected;
+            rejected.incrementAndGet();
+        }
+        latency.record((System.nanoTime() - start) / 1000);
+        return result;
+    }
+
+    // The matches() method checks whether a password is a user's
+    // current password, such as to stop it being reused, without
+    // counting as a login. It returns null if the pool is busy.
+    public Boolean matches(User user, String password) {
+        return check(password, user.getPasswordHash());
+    }
+
+    // The check() method runs a single password check on the pool,
+    // returning null if it can't be run, or doesn't finish in time.
+    private Boolean check(String password, String stored) {
+        Future<Boolean> check;
+        try {
+            check = pool.submit(() -> hasher.verify(password, stored));
+        } catch (RejectedExecutionException e) {
+            return null;
+        }
+        try {
+            return check.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            check.cancel(true);
+            return null;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Checking a password failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            check.cancel(true);
+            return null;
+        }
+    }
+
+    // The hash() method makes a new hash of a password on the
+    // pool, and waits for it, returning null if the pool is busy.
+    public String hash(String password) {
+        try {
+            return pool.submit(() -> hasher.hash(password)).get();
+        } catch (RejectedExecutionException e) {
+            return null;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Hashing a password failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    // The scheduleRehash() method upgrades a user's stored password
+    // in the background. The new hash is only kept if the password
+    // hasn't been changed in the meantime.
+    private void scheduleRehash(User user, String stored, String password) {
+        try {
+            rehasher.execute(() -> {
+                if (user.replacePasswordHash(stored, hasher.hash(password))) {
+                    rehashed.incrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // It will be tried again next time they log in
+        }
+    }
+
+    // The shutdown() method stops the pool, and the rehashing
+    // thread, once the work already given to them is done.
+    public void shutdown() {
+        pool.shutdown();
+        rehasher.shutdown();
+    }
+
+    // The getThreads() method is a getter method, for
+    // the number of threads checking passwords.
+    public int getThreads() {
+        return this.pool.getCorePoolSize();
+    }
+
+    // The getIterations() method is a getter method, for the
+    // number of iterations new password hashes are made with.
+    public int getIterations() {
+        return this.hasher.getIterations();
+    }
+
+    // The getLatency() method is a getter method, for how
+    // long each login took, in microseconds.
+    public ResolutionHistogram getLatency() {
+        return this.latency;
+    }
+
+    // The getAccepted() method is a getter method,
+    // for the number of logins let in.
+    public long getAccepted() {
+        return this.accepted.get();
+    }
+
+    // The getRejected() method is a getter method,
+    // for the number of logins with the wrong password.
+    public long getRejected() {
+        return this.rejected.get();
+    }
+
+    // The getBusy() method is a getter method, for the number
+    // of logins turned away because the pool was full.
+    public long getBusy() {
+        return this.busy.get();
+    }
+
+    // The getRehashed() method is a getter method, for the
+    // number of stored passwords which have been upgraded.
+    public long getRehashed() {
+        return this.rehashed.get();
+    }
+}
@@ -0,0 +1,26 @@
+// The DaemonThreadFactory class is used to create the threads
+// which do work in the background, such as rebalancing tickets.
+// The threads are daemon threads, so they never stop the program
+// from exiting, and are numbered after a name so they can be
+// told apart when debugging.
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DaemonThreadFactory implements ThreadFactory {
+    private final String name;
+    private final AtomicInteger count = new AtomicInteger();
+
+    // The DaemonThreadFactory() method is the constructor
+    // for the DaemonThreadFactory class.
+    public DaemonThreadFactory(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public Thread newThread(Runnable task) {
+        Thread thread = new Thread(task, name + "-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -0,0 +1,194 @@
+// The Dashboard class keeps what a logged in user sees on their menu,
+// their number of open tickets, their open tickets, and the tickets
+// of theirs which were closed most recently, so it isn't worked out
+// again every time a screen is shown.
+//
+// The SessionStore tells a dashboard whenever one of its user's
+// tickets changes. For a technician, a change to the open tickets
+// only marks them as out of date, and they are found again, from the
+// technician's open queue, the next time they are looked at. A staff
+// member's open tickets are only found once, and each change is then
+// applied on its own, so a busy submitter's whole list isn't read
+// again for every event. A closed ticket is added to the recent
+// closures directly. Dashboards nobody's tickets have changed for
+// cost nothing, however many tickets there are.
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+public class Dashboard {
+    // The number of recently closed tickets kept.
+    static final int RECENT_CLOSURES = 10;
+
+    // The most open tickets a technician's dashboard holds, the
+    // most urgent first. A staff member's dashboard holds all of
+    // their open tickets, oldest first, as they have few.
+    static final int TOP_TICKETS = 20;
+
+    private final User user;
+    private final ServiceDesk serviceDesk;
+
+    // Set by ticket changes, from any thread, without waiting
+    // for a refresh which is already under way
+    private volatile boolean stale = true;
+    private int openCount;
+    private List<Ticket> openTickets = Collections.emptyList();
+    private long refreshes;
+
+    // A staff member's open tickets, oldest first, and the tickets
+    // which have changed since they were last brought up to date.
+    // Changes are only queued, so a ticket change never waits for
+    // a refresh.
+    private final TreeSet<Ticket> submitted = new TreeSet<>(Comparator.comparingLong(Ticket::getSequence));
+    private boolean submittedLoaded;
+    private final ConcurrentLinkedQueue<Ticket> submittedChanges = new ConcurrentLinkedQueue<>();
+
+    // Guarded by itself, never held while finding tickets
+    private final ArrayDeque<Ticket> recentClosures = new ArrayDeque<>();
+    private boolean closuresLoaded;
+
+    // The Dashboard() method is the constructor for the Dashboard
+    // class, for a user's tickets at a service desk.
+    public Dashboard(User user, ServiceDesk serviceDesk) {
+        this.user = user;
+        this.serviceDesk = serviceDesk;
+    }
+
+    // The getOpenCount() method returns the number of open
+    // tickets assigned to a technician, or submitted by a
+    // staff member.
+    public int getOpenCount() {
+        refresh();
+        synchronized (this) {
+            return this.openCount;
+        }
+    }
+
+    // The getOpenTickets() method returns the dashboard's open
+    // tickets, which must not be changed.
+    public List<Ticket> getOpenTickets() {
+        refresh();
+        synchronized (this) {
+            return this.openTickets;
+        }
+    }
+
+    // The getRecentClosures() method returns up to RECENT_CLOSURES
+    // of the user's tickets which were closed most recently, the
+    // most recent first, by when they were marked completed.
+    public List<Ticket> getRecentClosures() {
+        synchronized (recentClosures) {
+            if (closuresLoaded) {
+                return new ArrayList<>(recentClosures);
+            }
+        }
+        // Found once, and then kept up to date by ticketClosed()
+        TicketQuery query = TicketQuery.allTickets().withClosed()
+                .withOrder(TicketQuery.Order.RecentlyCompleted).withLimit(RECENT_CLOSURES);
+        List<Ticket> closed = serviceDesk.findTickets(
+                user.getIsTechnician() ? query.withTechnician(user) : query.withCreator(user));
+        synchronized (recentClosures) {
+            if (!closuresLoaded) {
+                // Anything closed while the tickets were being found is already at the front
+                for (Ticket ticket : closed) {
+                    if (recentClosures.size() < RECENT_CLOSURES && !recentClosures.contains(ticket)) {
+                        recentClosures.addLast(ticket);
+                    }
+                }
+                closuresLoaded = true;
+            }
+            return new ArrayList<>(recentClosures);
+        }
+    }
+
+    // The getRefreshes() method is a getter method, for the number
+    // of times the open tickets have been found again.
+    public synchronized long getRefreshes() {
+        return this.refreshes;
+    }
+
+    // The invalidate() method marks the open tickets as out of
+    // date, so they are found again when next looked at.
+    void invalidate() {
+        stale = true;
+    }
+
+    // The ticketChanged() method is told about a change to one of
+    // the user's tickets. A staff member's dashboard queues the
+    // ticket, to be added to or taken out of their open tickets
+    // when next looked at, and a technician's is marked out of date.
+    void ticketChanged(Ticket ticket) {
+        if (!user.getIsTechnician()) {
+            submittedChanges.add(ticket);
+        }
+        stale = true;
+    }
+
+    // The ticketClosed() method adds a ticket to the front of
+    // the recent closures, as the most recently closed.
+    void ticketClosed(Ticket ticket) {
+        ticketChanged(ticket);
+        synchronized (recentClosures) {
+            recentClosures.remove(ticket);
+            recentClosures.addFirst(ticket);
+            if (recentClosures.size() > RECENT_CLOSURES) {
+                recentClosures.removeLast();
+            }
+        }
+    }
+
+    // The ticketReopened() method takes a ticket which is open
+    // again out of the recent closures.
+    void ticketReopened(Ticket ticket) {
+        ticketChanged(ticket);
+        synchronized (recentClosures) {
+            for (Iterator<Ticket> iterator = recentClosures.iterator(); iterator.hasNext();) {
+                if (iterator.next() == ticket) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    // The refresh() method finds the open tickets again, if they
+    // have changed since they were last found. A change made while
+    // they are being found marks them out of date again, so it is
+    // never missed. A staff member's queued changes are applied
+    // as each ticket is now, so the order they came in doesn't
+    // matter, and a change seen twice does no harm.
+    private synchronized void refresh() {
+        if (!stale) {
+            return;
+        }
+        stale = false;
+        refreshes++;
+        if (user.getIsTechnician()) {
+            // Straight from the top of the technician's open queue
+            openCount = user.getOpenQueue().size();
+            openTickets = Collections.unmodifiableList(serviceDesk.findTickets(TicketQuery.allTickets()
+                    .withOpen().withTechnician(user).withOrder(TicketQuery.Order.MostUrgent)
+                    .withLimit(TOP_TICKETS)));
+        } else {
+            if (!submittedLoaded) {
+                submitted.addAll(serviceDesk.findTickets(TicketQuery.allTickets()
+                        .withOpen().withCreator(user)));
+                submittedLoaded = true;
+            }
+            for (Ticket ticket; (ticket = submittedChanges.poll()) != null;) {
+                if (ticket.getIsOpen() && !ticket.getIsArchived()) {
+                    submitted.add(ticket);
+                } else {
+                    submitted.remove(ticket);
+                }
+            }
+            openTickets = Collections.unmodifiableList(new ArrayList<>(submitted));
+            openCount = openTickets.size();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+// The Department class is one department hosted by a DepartmentHost,
+// such as IT, facilities or HR. Each department has its own service
+// desk, with its own technicians, tickets and routing rule, and its
+// own user accounts, none of which are shared with any other
+// department. The threads which do work in the background are shared
+// between every department, so each department also has a Quota,
+// which limits how much of that shared work it can cause, so a
+// department having a busy day can't hold up the others.
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class Department {
+    // The Quota class holds the limits placed on a department. It
+    // is never modified, instead each withX() method returns a new
+    // quota with a single limit changed.
+    static final class Quota {
+        private final int intakeCapacity;
+        private final int intakeBatch;
+        private final long maxOpenTickets;
+        private final int notificationsPerRun;
+
+        private Quota(int intakeCapacity, int intakeBatch, long maxOpenTickets, int notificationsPerRun) {
+            this.intakeCapacity = intakeCapacity;
+            this.intakeBatch = intakeBatch;
+            this.maxOpenTickets = maxOpenTickets;
+            this.notificationsPerRun = notificationsPerRun;
+        }
+
+        // The defaults() method returns the quota
+        // a department is given unless told otherwise.
+        static Quota defaults() {
+            return new Quota(10000, 256, 100_000, 10_000);
+        }
+
+        // The withIntakeCapacity() method limits how many new
+        // tickets can wait to be assigned at once.
+        Quota withIntakeCapacity(int intakeCapacity) {
+            return new Quota(intakeCapacity, intakeBatch, maxOpenTickets, notificationsPerRun);
+        }
+
+        // The withIntakeBatch() method limits how many tickets are
+        // assigned at a time, before another department gets a turn.
+        Quota withIntakeBatch(int intakeBatch) {
+            return new Quota(intakeCapacity, intakeBatch, maxOpenTickets, notificationsPerRun);
+        }
+
+        // The withMaxOpenTickets() method limits how many tickets
+        // can be open, or waiting to be assigned, at once.
+        Quota withMaxOpenTickets(long maxOpenTickets) {
+            return new Quota(intakeCapacity, intakeBatch, maxOpenTickets, notificationsPerRun);
+        }
+
+        // The withNotificationsPerRun() method limits how many
+        // notifications are sent each time the dispatcher runs.
+        Quota withNotificationsPerRun(int notificationsPerRun) {
+            return new Quota(intakeCapacity, intakeBatch, maxOpenTickets, notificationsPerRun);
+        }
+
+        // The getIntakeCapacity() method is a getter method, for
+        // how many new tickets can wait to be assigned at once.
+        public int getIntakeCapacity() {
+            return this.intakeCapacity;
+        }
+
+        // The getIntakeBatch() method is a getter method, for
+        // how many tickets are assigned at a time.
+        public int getIntakeBatch() {
+            return this.intakeBatch;
+        }
+
+        // The getMaxOpenTickets() method is a getter method,
+        // for how many tickets can be open at once.
+        public long getMaxOpenTickets() {
+            return this.maxOpenTickets;
+        }
+
+        // The getNotificationsPerRun() method is a getter method, for
+        // how many notifications are sent each time the dispatcher runs.
+        public int getNotificationsPerRun() {
+            return this.notificationsPerRun;
+        }
+    }
+
+    private final String name;
+    private final ServiceDesk serviceDesk;
+    private final UserDirectory users;
+    private final TicketIntake intake;
+    private final NotificationOutbox outbox = new NotificationOutbox();
+    private final Quota quota;
+    private final AtomicLong overQuota = new AtomicLong();
+
+    // The Department() method is the constructor for the
+    // Department class. Departments are created by
+    // DepartmentHost.addDepartment().
+    Department(String name, ServiceDesk serviceDesk, UserDirectory users, Quota quota) {
+        this.name = name;
+        this.serviceDesk = serviceDesk;
+        this.users = users;
+        this.quota = quota;
+        this.intake = new TicketIntake(serviceDesk, quota.getIntakeCapacity(), TicketIntake.Policy.Defer,
+                Duration.ofMillis(250), quota.getIntakeBatch());
+        serviceDesk.addTicketListener(outbox);
+    }
+
+    // The submit() method hands a new ticket to the department's
+    // intake, unless the department already has as many open
+    // tickets as its quota allows, in which case it is turned away.
+    public TicketIntake.Admission submit(Ticket ticket) {
+        if (serviceDesk.countOpenTickets() + intake.getPending() >= quota.getMaxOpenTickets()) {
+            overQuota.incrementAndGet();
+            return TicketIntake.Admission.Rejected;
+        }
+        return intake.submit(ticket);
+    }
+
+    // The getName() method is a getter method,
+    // for the department's name.
+    public String getName() {
+        return this.name;
+    }
+
+    // The getServiceDesk() method is a getter method,
+    // for the department's service desk.
+    public ServiceDesk getServiceDesk() {
+        return this.serviceDesk;
+    }
+
+    // The getUsers() method is a getter method,
+    // for the department's user accounts.
+    public UserDirectory getUsers() {
+        return this.users;
+    }
+
+    // The getIntake() method is a getter method, for
+    // the queue of the department's new tickets.
+    public TicketIntake getIntake() {
+        return this.intake;
+    }
+
+    // The getOutbox() method is a getter method, for the
+    // notifications waiting to be sent for the department.
+    public NotificationOutbox getOutbox() {
+        return this.outbox;
+    }
+
+    // The getQuota() method is a getter method,
+    // for the limits placed on the department.
+    public Quota getQuota() {
+        return this.quota;
+    }
+
+    // The getOverQuota() method is a getter method, for the
+    // number of tickets turned away by the open ticket quota.
+    public long getOverQuota() {
+        return this.overQuota.get();
+    }
+}
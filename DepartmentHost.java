@@ -0,0 +1,124 @@
+// The DepartmentHost class runs the service desks of several
+// departments in a single program, rather than a separate program
+// for each. The departments are kept apart from each other, each
+// with its own technicians, tickets and accounts, but share the
+// threads which work in the background: a few scheduler threads for
+// rebalancing, archiving and sending notifications, a single pool
+// for assigning new tickets, a single notification transport, a
+// single event log, where each event is marked with its department,
+// and a single store of the sessions of everyone logged in.
+//
+// The shared work is done a little at a time for each department in
+// turn. New tickets are assigned a few batches at a time before the
+// next department's intake gets the thread, and each department
+// sends a limited number of notifications per run, so a burst in one
+// department waits behind its own work, rather than everyone's.
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class DepartmentHost {
+    // How often the background work is done for each department.
+    private static final Duration BACKGROUND_PERIOD = Duration.ofMinutes(1);
+
+    private final ScheduledExecutorService scheduler;
+    private final Executor intakeExecutor;
+    private final NotificationTransport transport;
+    private final ServiceDesk.Mode mode;
+    private final EventLog eventLog;
+    private final SessionStore sessions;
+
+    // Keyed by the lower case name, in the order they were added.
+    private final Map<String, Department> departments = new LinkedHashMap<>();
+
+    // The DepartmentHost() method is the constructor for the
+    // DepartmentHost class, taking the threads, transport, event
+    // log and session store shared by every department, and the
+    // mode their service desks are run in.
+    public DepartmentHost(ScheduledExecutorService scheduler, Executor intakeExecutor,
+            NotificationTransport transport, EventLog eventLog, SessionStore sessions, ServiceDesk.Mode mode) {
+        this.scheduler = scheduler;
+        this.intakeExecutor = intakeExecutor;
+        this.transport = transport;
+        this.eventLog = eventLog;
+        this.sessions = sessions;
+        this.mode = mode;
+    }
+
+    // The addDepartment() method creates a department with its own
+    // technicians, and starts its background work on the shared
+    // threads. Tickets at least as severe as the escalation severity
+    // go to the department's level 2 technicians.
+    public synchronized Department addDepartment(String name, User[] techniciansLevel1,
+            User[] techniciansLevel2, Ticket.Severity escalationSeverity, Department.Quota quota) {
+        String key = name.toLowerCase(Locale.ROOT);
+        if (departments.containsKey(key)) {
+            throw new IllegalArgumentException("There is already a department called " + name);
+        }
+        ServiceDesk serviceDesk = new ServiceDesk(techniciansLevel1, techniciansLevel2, mode);
+        serviceDesk.setEscalationSeverity(escalationSeverity);
+        UserDirectory users = new UserDirectory();
+        for (User technician : techniciansLevel1) {
+            users.add(technician);
+        }
+        for (User technician : techniciansLevel2) {
+            users.add(technician);
+        }
+        Department department = new Department(name, serviceDesk, users, quota);
+        serviceDesk.addTicketListener(eventLog.listenerFor(name));
+        serviceDesk.addTicketListener(sessions);
+
+        department.getIntake().start(intakeExecutor);
+        new TicketRebalancer(serviceDesk).start(scheduler, BACKGROUND_PERIOD);
+        new NotificationDispatcher(department.getOutbox(), transport, 100, quota.getNotificationsPerRun())
+                .start(scheduler, BACKGROUND_PERIOD);
+        // Archive tickets even while no one is using the department
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                serviceDesk.automaticallyRefreshTickets();
+            } catch (RuntimeException e) {
+                System.err.println("Archiving " + name + " tickets failed: " + e);
+            }
+        }, BACKGROUND_PERIOD.toMillis(), BACKGROUND_PERIOD.toMillis(), TimeUnit.MILLISECONDS);
+
+        departments.put(key, department);
+        return department;
+    }
+
+    // The getDepartment() method returns the department with
+    // a name, ignoring case, or null if there is none.
+    public synchronized Department getDepartment(String name) {
+        return departments.get(name.toLowerCase(Locale.ROOT));
+    }
+
+    // The getDepartments() method returns every department,
+    // in the order they were added.
+    public synchronized List<Department> getDepartments() {
+        return Collections.unmodifiableList(new ArrayList<>(departments.values()));
+    }
+
+    // The getSessions() method is a getter method, for the
+    // sessions of everyone logged in to any department.
+    public SessionStore getSessions() {
+        return this.sessions;
+    }
+
+    // The shutdown() method stops every department's intake and
+    // service desk, once they have finished the work already given
+    // to them. The shared threads belong to the caller, who stops
+    // them afterwards.
+    public synchronized void shutdown() {
+        for (Department department : departments.values()) {
+            department.getIntake().stop();
+            department.getServiceDesk().shutdown();
+        }
+    }
+}
@@ -0,0 +1,286 @@
+// The DescriptionStore class holds the descriptions of tickets, in
+// far less memory than a separate String for every ticket. When many
+// tickets are raised about the same problem at once, they are often
+// given the very same description, which is only stored once.
+//
+// Each description is stored as UTF-8 bytes, one after the other, in
+// large shared arrays, and a ticket only keeps the number of its
+// description. Long descriptions are compressed, with a dictionary of
+// words common in tickets, so even a short text has something to be
+// compressed against. A description is only turned back into a
+// String when it is asked for.
+//
+// Descriptions are found again by a hash of their bytes, in a table
+// of their numbers, and a match is always checked byte for byte.
+// Nothing is ever removed, just as tickets are never removed.
+//
+// Storing a description takes the lock, but reading one doesn't.
+// Stored bytes are never changed or moved, so after each description
+// is stored, the arrays saying where every description is are
+// published together as an unchanging view. A reader only follows
+// the view, and decompresses with an Inflater of its own thread, so
+// any number of threads can read descriptions at once.
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+public class DescriptionStore {
+    // The number returned for a null description.
+    static final int NONE = -1;
+
+    // Descriptions at least this many bytes long are compressed,
+    // as shorter ones rarely get any smaller.
+    static final int COMPRESS_THRESHOLD = 64;
+
+    // The size of each of the arrays descriptions are stored in.
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    // Words and phrases common in tickets, with the most common
+    // last, as those are the cheapest for the compressor to refer to.
+    private static final byte[] DICTIONARY = ("monitor keyboard mouse headset webcam projector scanner phone "
+            + "install update upgrade software licence application crashes freezes slow keeps "
+            + "VPN network internet connection wifi wireless server shared drive folder file "
+            + "outlook email inbox calendar teams meeting account locked reset password login log in "
+            + "laptop computer desktop printer screen error message when I try to it says "
+            + "cannot can't unable to does not doesn't is not isn't working not working please help "
+            + "the and to of a in is on for my with this that ").getBytes(StandardCharsets.UTF_8);
+
+    // Each thread decompresses with its own Inflater
+    private static final ThreadLocal<Inflater> INFLATERS = ThreadLocal.withInitial(Inflater::new);
+
+    // The View class is where every description stored so far is,
+    // as published after the last one was stored. Only the entries
+    // below count are ever read through it.
+    private static final class View {
+        private final byte[][] chunks;
+        private final long[] locations;
+        private final int[] storedLengths;
+        private final int[] originalLengths;
+        private final int count;
+
+        private View(byte[][] chunks, long[] locations, int[] storedLengths, int[] originalLengths, int count) {
+            this.chunks = chunks;
+            this.locations = locations;
+            this.storedLengths = storedLengths;
+            this.originalLengths = originalLengths;
+            this.count = count;
+        }
+    }
+
+    private final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+    private byte[] compressBuffer = new byte[1024];
+
+    // Everything from here down to view is only used while holding the lock
+    private byte[][] chunks = new byte[0][];
+    private int chunkPosition = CHUNK_SIZE;
+
+    // For each description, by its number: where its bytes are, as
+    // the chunk in the upper half and the position in the lower half,
+    // how many bytes are stored, how many bytes it has once
+    // decompressed, or -1 if it isn't compressed, and its hash
+    private long[] locations = new long[1024];
+    private int[] storedLengths = new int[1024];
+    private int[] originalLengths = new int[1024];
+    private long[] hashes = new long[1024];
+    private int count;
+
+    // Open addressing, holding each description's number plus one,
+    // so that 0 is an empty place
+    private int[] table = new int[2048];
+
+    private long storedBytes, originalBytes, duplicates;
+
+    private volatile View view = new View(chunks, locations, storedLengths, originalLengths, 0);
+
+    // The intern() method stores a description, unless the very same
+    // description is already stored, and returns its number.
+    public synchronized int intern(String description) {
+        if (description == null) {
+            return NONE;
+        }
+        byte[] bytes = description.getBytes(StandardCharsets.UTF_8);
+        long hash = hash(bytes);
+        int mask = table.length - 1;
+        int place = (int) (hash ^ (hash >>> 32)) & mask;
+        while (table[place] != 0) {
+            int id = table[place] - 1;
+            if (hashes[id] == hash && Arrays.equals(bytes, decode(view, id))) {
+                duplicates++;
+                return id;
+            }
+            place = (place + 1) & mask;
+        }
+        int id = append(bytes, hash);
+        table[place] = id + 1;
+        // Kept no more than half full, so places are found quickly
+        if (count * 2 > table.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    // The get() method returns the description with a number,
+    // or null for NONE. It never takes the lock.
+    public String get(int id) {
+        if (id == NONE) {
+            return null;
+        }
+        View current = view;
+        if (id < 0 || id >= current.count) {
+            throw new IllegalArgumentException("There is no description " + id);
+        }
+        if (current.originalLengths[id] < 0) {
+            // Read straight out of the chunk, without copying it first
+            long location = current.locations[id];
+            return new String(current.chunks[(int) (location >>> 32)], (int) location, current.storedLengths[id],
+                    StandardCharsets.UTF_8);
+        }
+        return new String(decode(current, id), StandardCharsets.UTF_8);
+    }
+
+    // The getCount() method returns the number of
+    // different descriptions stored.
+    public int getCount() {
+        return this.view.count;
+    }
+
+    // The getDuplicates() method returns the number of descriptions
+    // which weren't stored as they were already there.
+    public synchronized long getDuplicates() {
+        return this.duplicates;
+    }
+
+    // The getStoredBytes() method returns the number of bytes
+    // the descriptions take up, once compressed.
+    public synchronized long getStoredBytes() {
+        return this.storedBytes;
+    }
+
+    // The getOriginalBytes() method returns the number of bytes
+    // the different descriptions have as UTF-8, before compression.
+    public synchronized long getOriginalBytes() {
+        return this.originalBytes;
+    }
+
+    // The append() method adds a new description to the end of
+    // the chunks, compressed if that makes it smaller.
+    private int append(byte[] bytes, long hash) {
+        byte[] stored = bytes;
+        int storedLength = bytes.length;
+        int originalLength = -1;
+        if (bytes.length >= COMPRESS_THRESHOLD) {
+            int compressed = compress(bytes);
+            if (compressed < bytes.length) {
+                stored = compressBuffer;
+                storedLength = compressed;
+                originalLength = bytes.length;
+            }
+        }
+        if (count == locations.length) {
+            int size = count * 2;
+            locations = Arrays.copyOf(locations, size);
+            storedLengths = Arrays.copyOf(storedLengths, size);
+            originalLengths = Arrays.copyOf(originalLengths, size);
+            hashes = Arrays.copyOf(hashes, size);
+        }
+        if (chunkPosition + storedLength > CHUNK_SIZE) {
+            // A description bigger than a chunk gets a chunk of its own
+            chunks = Arrays.copyOf(chunks, chunks.length + 1);
+            chunks[chunks.length - 1] = new byte[Math.max(CHUNK_SIZE, storedLength)];
+            chunkPosition = 0;
+        }
+        int chunk = chunks.length - 1;
+        System.arraycopy(stored, 0, chunks[chunk], chunkPosition, storedLength);
+        int id = count++;
+        locations[id] = ((long) chunk << 32) | chunkPosition;
+        storedLengths[id] = storedLength;
+        originalLengths[id] = originalLength;
+        hashes[id] = hash;
+        chunkPosition += storedLength;
+        storedBytes += storedLength;
+        originalBytes += bytes.length;
+        // Everything written above is seen by any thread which reads this view
+        view = new View(chunks, locations, storedLengths, originalLengths, count);
+        return id;
+    }
+
+    // The compress() method compresses bytes into the compress
+    // buffer, and returns how many bytes it took, or the length of
+    // the bytes if they couldn't be made smaller.
+    private int compress(byte[] bytes) {
+        deflater.reset();
+        deflater.setDictionary(DICTIONARY);
+        deflater.setInput(bytes);
+        deflater.finish();
+        int length = deflater.deflate(compressBuffer, 0, Math.min(bytes.length, compressBuffer.length));
+        if (!deflater.finished()) {
+            if (bytes.length <= compressBuffer.length) {
+                return bytes.length;
+            }
+            // A long description, which may still be made smaller
+            compressBuffer = Arrays.copyOf(compressBuffer, bytes.length);
+            length += deflater.deflate(compressBuffer, length, bytes.length - length);
+            if (!deflater.finished()) {
+                return bytes.length;
+            }
+        }
+        return length;
+    }
+
+    // The decode() method returns a description's UTF-8 bytes,
+    // decompressing them if needed, reading only from the view.
+    private static byte[] decode(View view, int id) {
+        long location = view.locations[id];
+        byte[] chunk = view.chunks[(int) (location >>> 32)];
+        int position = (int) location;
+        int storedLength = view.storedLengths[id];
+        if (view.originalLengths[id] < 0) {
+            return Arrays.copyOfRange(chunk, position, position + storedLength);
+        }
+        byte[] bytes = new byte[view.originalLengths[id]];
+        Inflater inflater = INFLATERS.get();
+        inflater.reset();
+        inflater.setInput(chunk, position, storedLength);
+        try {
+            int length = inflater.inflate(bytes);
+            if (length == 0 && inflater.needsDictionary()) {
+                inflater.setDictionary(DICTIONARY);
+                length = inflater.inflate(bytes);
+            }
+            if (length != bytes.length) {
+                throw new IllegalStateException("Description " + id + " is damaged");
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Description " + id + " is damaged", e);
+        }
+        return bytes;
+    }
+
+    // The rehash() method doubles the size of the table, and
+    // puts every description back in it.
+    private void rehash() {
+        table = new int[table.length * 2];
+        int mask = table.length - 1;
+        for (int id = 0; id < count; id++) {
+            long hash = hashes[id];
+            int place = (int) (hash ^ (hash >>> 32)) & mask;
+            while (table[place] != 0) {
+                place = (place + 1) & mask;
+            }
+            table[place] = id + 1;
+        }
+    }
+
+    // The hash() method returns a 64 bit FNV-1a hash of bytes.
+    private static long hash(byte[] bytes) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,118 @@
+// The DeskSnapshot class is a consistent, unchanging view of every
+// technician's tickets on a service desk at a single moment. Long
+// running reads, such as reports, work from a snapshot so they
+// never see a ticket half way through being reassigned, and never
+// hold up the tickets being created or updated in the meantime.
+//
+// Only which tickets each technician held is frozen. The tickets
+// themselves are not copied, so a ticket's status, severity and
+// other state are read as they are when the ticket is looked at,
+// which may be after the snapshot was taken. Reading a ticket's
+// State once gives a consistent view of that one ticket.
+
+import java.util.function.Consumer;
+
+public class DeskSnapshot {
+    private final long version;
+    private final User[] techniciansLevel1, techniciansLevel2;
+    private final TicketList.Snapshot[] ticketsLevel1, ticketsLevel2;
+
+    // The DeskSnapshot() method is the constructor for the
+    // DeskSnapshot class. The ticket arrays hold the tickets of
+    // the technician at the same position in the technician arrays.
+    DeskSnapshot(long version, User[] techniciansLevel1, TicketList.Snapshot[] ticketsLevel1,
+            User[] techniciansLevel2, TicketList.Snapshot[] ticketsLevel2) {
+        this.version = version;
+        this.techniciansLevel1 = techniciansLevel1;
+        this.ticketsLevel1 = ticketsLevel1;
+        this.techniciansLevel2 = techniciansLevel2;
+        this.ticketsLevel2 = ticketsLevel2;
+    }
+
+    // The getVersion() method is a getter method, for the
+    // version of the service desk this snapshot was taken at.
+    public long getVersion() {
+        return this.version;
+    }
+
+    // The getTechnicians() method returns the technicians
+    // in a tier when the snapshot was taken.
+    public User[] getTechnicians(ServiceDesk.Tier tier) {
+        return (tier == ServiceDesk.Tier.Level1 ? techniciansLevel1 : techniciansLevel2).clone();
+    }
+
+    // The getTickets() method returns the tickets of the
+    // technician at a position in a tier.
+    public TicketList.Snapshot getTickets(ServiceDesk.Tier tier, int index) {
+        return tier == ServiceDesk.Tier.Level1 ? ticketsLevel1[index] : ticketsLevel2[index];
+    }
+
+    // This version of getTickets() returns the tickets of a
+    // technician, or null if they were not a member of any tier.
+    public TicketList.Snapshot getTickets(User technician) {
+        for (int i = 0; i < techniciansLevel1.length; i++) {
+            if (techniciansLevel1[i] == technician) {
+                return ticketsLevel1[i];
+            }
+        }
+        for (int i = 0; i < techniciansLevel2.length; i++) {
+            if (techniciansLevel2[i] == technician) {
+                return ticketsLevel2[i];
+            }
+        }
+        return null;
+    }
+
+    // The tierOf() method returns the tier a technician was a
+    // member of, or null if they were not a member of any tier.
+    public ServiceDesk.Tier tierOf(User technician) {
+        for (User member : techniciansLevel1) {
+            if (member == technician) {
+                return ServiceDesk.Tier.Level1;
+            }
+        }
+        for (User member : techniciansLevel2) {
+            if (member == technician) {
+                return ServiceDesk.Tier.Level2;
+            }
+        }
+        return null;
+    }
+
+    // The countTickets() method returns the number of tickets
+    // held by the technicians of a tier.
+    public long countTickets(ServiceDesk.Tier tier) {
+        long count = 0;
+        for (TicketList.Snapshot tickets : tier == ServiceDesk.Tier.Level1 ? ticketsLevel1 : ticketsLevel2) {
+            count += tickets.size();
+        }
+        return count;
+    }
+
+    // The forEachTicket() method walks through every ticket in
+    // the snapshot. A ticket is only ever assigned to one
+    // technician, so each is walked through once.
+    public void forEachTicket(Consumer<Ticket> action) {
+        for (TicketList.Snapshot tickets : ticketsLevel1) {
+            tickets.forEach(action);
+        }
+        for (TicketList.Snapshot tickets : ticketsLevel2) {
+            tickets.forEach(action);
+        }
+    }
+
+    // The forEachTicket() method walks through every ticket
+    // of a single technician in the snapshot.
+    public void forEachTicket(User technician, Consumer<Ticket> action) {
+        for (int i = 0; i < techniciansLevel1.length; i++) {
+            if (techniciansLevel1[i] == technician) {
+                ticketsLevel1[i].forEach(action);
+            }
+        }
+        for (int i = 0; i < techniciansLevel2.length; i++) {
+            if (techniciansLevel2[i] == technician) {
+                ticketsLevel2[i].forEach(action);
+            }
+        }
+    }
+}
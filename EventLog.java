@@ -0,0 +1,387 @@
+// The EventLog class keeps a structured log of what happens to
+// tickets, such as tickets being assigned, changing status, or being
+// archived, written as one JSON object per line to a file which is
+// rolled over when it gets too large.
+//
+// Logging an event must not slow down the change being logged, so
+// the event is only copied into one of a fixed number of slots made
+// when the log is created, using a compare-and-set to claim the slot
+// and nothing else, with no locks, no objects created, and no
+// writing. A single background thread takes the events out of the
+// slots in batches, turns them into lines, and writes them out. If
+// every slot is full, an event is either dropped, and counted, or
+// the change waits for a slot to be freed, depending on the policy.
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+public class EventLog {
+    // The Policy enum is used to choose what happens
+    // when every slot is full, either Drop the event,
+    // or Block the change until a slot is free
+    enum Policy {
+        Drop,
+        Block
+    }
+
+    // The Kind enum is used to tell what happened to a ticket.
+    enum Kind {
+        Assigned("assigned"),
+        Reassigned("reassigned"),
+        StatusChanged("status"),
+        SeverityChanged("severity"),
+        Archived("archived");
+
+        private final String label;
+
+        Kind(String label) {
+            this.label = label;
+        }
+    }
+
+    // The Slot class holds a single event until it is written. The
+    // slots are made once, and reused for every event after that.
+    private static final class Slot {
+        private String source;
+        private Kind kind;
+        private long time;
+        private Ticket ticket;
+        private User oldTechnician, newTechnician;
+        private Enum<?> oldValue, newValue;
+    }
+
+    // The most events turned into lines before they are written.
+    private static final int BATCH_SIZE = 1024;
+
+    // How long the writer waits, when there is nothing to write,
+    // before looking again.
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final Path file;
+    private final Policy policy;
+    private final long maxFileBytes;
+    private final int maxFiles;
+
+    // A slot's sequence says whose turn it is, in the same way
+    // as a CommandRing, so the slots can be filled without locks.
+    private final Slot[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    // Only used by the writer thread.
+    private long head;
+    private final StringBuilder lines = new StringBuilder(BATCH_SIZE * 160);
+    private final char[] chunk = new char[8192];
+    private Writer writer;
+    private long fileBytes;
+
+    private volatile long written;
+    private volatile boolean running;
+    private Thread flusher;
+
+    // The EventLog() method is the constructor for the EventLog
+    // class. It holds up to capacity events waiting to be written,
+    // and once the file reaches about maxFileBytes it is renamed,
+    // keeping at most maxFiles files including the current one.
+    public EventLog(Path file, int capacity, Policy policy, long maxFileBytes, int maxFiles) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.file = file;
+        this.policy = policy;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = Math.max(1, maxFiles);
+        this.mask = size - 1;
+        this.slots = new Slot[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+            sequences.set(i, i);
+        }
+    }
+
+    // The start() method starts the thread which writes
+    // the events out to the file.
+    public synchronized void start() {
+        if (flusher == null) {
+            running = true;
+            flusher = new DaemonThreadFactory("sentinel-eventlog").newThread(this::flushLoop);
+            flusher.start();
+        }
+    }
+
+    // The close() method writes out every event already logged,
+    // closes the file, and stops the writing thread.
+    public void close() {
+        Thread current;
+        synchronized (this) {
+            running = false;
+            current = flusher;
+        }
+        if (current != null) {
+            LockSupport.unpark(current);
+            try {
+                current.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // The listenerFor() method returns a listener which logs the
+    // ticket events it is told about, marked with where they came
+    // from, such as the name of a department.
+    public TicketListener listenerFor(String source) {
+        return new TicketListener() {
+            @Override
+            public void ticketAssigned(Ticket ticket, User oldTechnician, User newTechnician) {
+                log(source, oldTechnician == null ? Kind.Assigned : Kind.Reassigned, ticket,
+                        oldTechnician, newTechnician, null, null);
+            }
+
+            @Override
+            public void ticketStatusChanged(Ticket ticket, Ticket.TicketStatus oldStatus,
+                    Ticket.TicketStatus newStatus) {
+                log(source, Kind.StatusChanged, ticket, null, null, oldStatus, newStatus);
+            }
+
+            @Override
+            public void ticketSeverityChanged(Ticket ticket, Ticket.Severity oldSeverity,
+                    Ticket.Severity newSeverity) {
+                log(source, Kind.SeverityChanged, ticket, null, null, oldSeverity, newSeverity);
+            }
+
+            @Override
+            public void ticketStateChanged(Ticket ticket, Ticket.State oldState, Ticket.State newState) {
+                if (!oldState.archived && newState.archived) {
+                    log(source, Kind.Archived, ticket, null, null, null, null);
+                }
+            }
+        };
+    }
+
+    // The log() method copies an event into the next free slot. It
+    // only claims the slot and fills it in, leaving everything else
+    // to the writing thread.
+    void log(String source, Kind kind, Ticket ticket, User oldTechnician, User newTechnician,
+            Enum<?> oldValue, Enum<?> newValue) {
+        long position;
+        int index;
+        while (true) {
+            position = tail.get();
+            index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+            } else if (difference < 0) {
+                // Every slot is waiting to be written
+                if (policy == Policy.Drop) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+                Thread current = flusher;
+                if (current != null) {
+                    LockSupport.unpark(current);
+                }
+                LockSupport.parkNanos(1000);
+            }
+        }
+        Slot slot = slots[index];
+        slot.source = source;
+        slot.kind = kind;
+        slot.time = System.currentTimeMillis();
+        slot.ticket = ticket;
+        slot.oldTechnician = oldTechnician;
+        slot.newTechnician = newTechnician;
+        slot.oldValue = oldValue;
+        slot.newValue = newValue;
+        sequences.lazySet(index, position + 1);
+    }
+
+    // The getWritten() method is a getter method, for
+    // the number of events written to the file.
+    public long getWritten() {
+        return this.written;
+    }
+
+    // The getDropped() method is a getter method, for the number
+    // of events dropped because every slot was full.
+    public long getDropped() {
+        return this.dropped.get();
+    }
+
+    // The flushLoop() method is run by the writing thread. It writes
+    // out events while there are any, and otherwise flushes the file
+    // and waits a moment before looking again.
+    private void flushLoop() {
+        while (true) {
+            boolean stopping = !running;
+            int count = drain();
+            if (count > 0) {
+                written += count;
+                write();
+                continue;
+            }
+            flushWriter();
+            if (stopping) {
+                break;
+            }
+            LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+        }
+        closeWriter();
+    }
+
+    // The drain() method turns up to a batch of events into
+    // lines, freeing their slots, and returns how many there were.
+    private int drain() {
+        int count = 0;
+        while (count < BATCH_SIZE) {
+            int index = (int) head & mask;
+            if (sequences.get(index) != head + 1) {
+                break;
+            }
+            Slot slot = slots[index];
+            appendLine(slot);
+            // Let go of the ticket, so the slot doesn't keep it alive
+            slot.ticket = null;
+            slot.oldTechnician = null;
+            slot.newTechnician = null;
+            sequences.lazySet(index, head + mask + 1);
+            head++;
+            count++;
+        }
+        return count;
+    }
+
+    private void appendLine(Slot slot) {
+        lines.append("{\"time\":\"");
+        DateTimeFormatter.ISO_INSTANT.formatTo(Instant.ofEpochMilli(slot.time), lines);
+        lines.append("\",\"source\":");
+        appendString(slot.source);
+        lines.append(",\"event\":\"").append(slot.kind.label);
+        lines.append("\",\"ticket\":\"").append(slot.ticket.getUUID());
+        lines.append("\",\"sequence\":").append(slot.ticket.getSequence());
+        if (slot.kind == Kind.Assigned || slot.kind == Kind.Reassigned) {
+            if (slot.oldTechnician != null) {
+                lines.append(",\"from\":");
+                appendString(slot.oldTechnician.getEmail());
+            }
+            lines.append(",\"to\":");
+            appendString(slot.newTechnician.getEmail());
+        } else if (slot.kind != Kind.Archived) {
+            lines.append(",\"from\":\"").append(slot.oldValue).append("\",\"to\":\"").append(slot.newValue)
+                    .append('"');
+        }
+        lines.append("}\n");
+    }
+
+    // The appendString() method writes text as a JSON string,
+    // escaping anything which can't appear in one as it is.
+    private void appendString(CharSequence text) {
+        if (text == null) {
+            lines.append("null");
+            return;
+        }
+        lines.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                lines.append('\\').append(c);
+            } else if (c < 0x20) {
+                lines.append(String.format("\\u%04x", (int) c));
+            } else {
+                lines.append(c);
+            }
+        }
+        lines.append('"');
+    }
+
+    // The write() method writes the lines built up to the file, and
+    // rolls the file over once it has grown past its limit. If the
+    // file can't be written the lines are dropped, rather than
+    // stopping the thread.
+    private void write() {
+        try {
+            if (writer == null) {
+                fileBytes = Files.exists(file) ? Files.size(file) : 0;
+                writer = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+            }
+            for (int from = 0; from < lines.length(); from += chunk.length) {
+                int to = Math.min(lines.length(), from + chunk.length);
+                lines.getChars(from, to, chunk, 0);
+                writer.write(chunk, 0, to - from);
+            }
+            // Nearly every line is plain ASCII, so this is close
+            // to the number of bytes written
+            fileBytes += lines.length();
+            if (fileBytes >= maxFileBytes) {
+                roll();
+            }
+        } catch (IOException e) {
+            System.err.println("Writing the event log failed: " + e);
+            closeWriter();
+        } finally {
+            lines.setLength(0);
+        }
+    }
+
+    // The roll() method closes the file, and renames it, and each
+    // earlier file, to the next number along, so events.log becomes
+    // events.log.1, and the oldest file is removed.
+    private void roll() throws IOException {
+        closeWriter();
+        if (maxFiles == 1) {
+            Files.deleteIfExists(file);
+            return;
+        }
+        Files.deleteIfExists(rolled(maxFiles - 1));
+        for (int number = maxFiles - 2; number >= 1; number--) {
+            if (Files.exists(rolled(number))) {
+                Files.move(rolled(number), rolled(number + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(file, rolled(1), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Path rolled(int number) {
+        return Paths.get(file.toString() + "." + number);
+    }
+
+    private void flushWriter() {
+        if (writer != null) {
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                System.err.println("Writing the event log failed: " + e);
+                closeWriter();
+            }
+        }
+    }
+
+    private void closeWriter() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                System.err.println("Closing the event log failed: " + e);
+            }
+            writer = null;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+// The FileNotificationTransport class is a stand in for a mail
+// server. Instead of sending each digest, it appends it to a file
+// as a plain text message with SMTP style headers, so notifications
+// can be checked locally without a mail server.
+//
+// Each batch is written out in full before any of it is added to
+// the file, and if adding it fails, the file is cut back to where it
+// was, so a batch is either all in the file or not in it at all, and
+// trying it again never repeats digests.
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+public class FileNotificationTransport implements NotificationTransport {
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    private final Path file;
+    private final String sender;
+
+    // The FileNotificationTransport() method is the constructor
+    // for the FileNotificationTransport class.
+    public FileNotificationTransport(Path file, String sender) {
+        this.file = file;
+        this.sender = sender;
+    }
+
+    // The deliver() method appends every digest in the batch to the
+    // file, all at once, or none of them if it fails. It is
+    // synchronized, as dispatchers for several departments can share
+    // the transport.
+    @Override
+    public synchronized void deliver(List<NotificationDigest> digests) throws IOException {
+        StringBuilder batch = new StringBuilder(digests.size() * 256);
+        for (NotificationDigest digest : digests) {
+            writeMessage(batch, digest);
+        }
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(batch.toString());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            long end = channel.size();
+            try {
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes, end + bytes.position());
+                }
+            } catch (IOException e) {
+                // Take back whatever part of the batch was written
+                channel.truncate(end);
+                throw e;
+            }
+        }
+    }
+
+    private void writeMessage(StringBuilder writer, NotificationDigest digest) {
+        User recipient = digest.getRecipient();
+        writer.append("From: " + sender + "\n");
+        writer.append("To: " + recipient.getFirstName() + " " + recipient.getLastName() + " <"
+                + recipient.getEmail() + ">\n");
+        writer.append("Subject: " + digest.getSubject() + "\n\n");
+        writer.append("Hi " + recipient.getFirstName() + ",\n\n");
+        for (Notification notification : digest.getNotifications()) {
+            Ticket ticket = notification.getTicket();
+            User technician = notification.getTechnician();
+            writer.append("- The ticket \"" + ticket.getDescription() + "\" created on "
+                    + ticket.getDateCreated().format(DATE_FORMAT));
+            switch (notification.getKind()) {
+                case Assigned:
+                    writer.append(" was assigned to " + technician.getFirstName() + " " + technician.getLastName());
+                    break;
+                case Reassigned:
+                    writer.append(" was reassigned to " + technician.getFirstName() + " " + technician.getLastName());
+                    break;
+                case Completed:
+                    writer.append(" was marked " + notification.getStatus().name());
+                    break;
+            }
+            writer.append(".\n");
+        }
+        writer.append("\n.\n\n");
+    }
+}
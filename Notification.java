@@ -0,0 +1,86 @@
+// The Notification class records that a user should be told
+// about something which happened to a ticket. Notifications are
+// recorded as the ticket changes, and sent later in digests by
+// the NotificationDispatcher.
+
+import java.time.Instant;
+
+public class Notification {
+    // The Kind enum is used to tell what
+    // happened to the ticket, either it was
+    // Assigned, Reassigned or Completed
+    enum Kind {
+        Assigned,
+        Reassigned,
+        Completed
+    }
+
+    private final User recipient;
+    private final Kind kind;
+    private final Ticket ticket;
+    private final User technician;
+    private final Ticket.TicketStatus status;
+    private final Instant time;
+    // Only changed by the dispatcher sending the notification
+    private int failedAttempts;
+
+    // The Notification() method is the constructor for the
+    // Notification class. The technician and status are those of
+    // the ticket when the notification was recorded.
+    public Notification(User recipient, Kind kind, Ticket ticket, User technician, Ticket.TicketStatus status) {
+        this.recipient = recipient;
+        this.kind = kind;
+        this.ticket = ticket;
+        this.technician = technician;
+        this.status = status;
+        this.time = Instant.now();
+    }
+
+    // The getRecipient() method is a getter method,
+    // for the user to be notified.
+    public User getRecipient() {
+        return this.recipient;
+    }
+
+    // The getKind() method is a getter method,
+    // for what happened to the ticket.
+    public Kind getKind() {
+        return this.kind;
+    }
+
+    // The getTicket() method is a getter method,
+    // for the ticket the notification is about.
+    public Ticket getTicket() {
+        return this.ticket;
+    }
+
+    // The getTechnician() method is a getter method, for the
+    // technician the ticket was assigned to at the time.
+    public User getTechnician() {
+        return this.technician;
+    }
+
+    // The getStatus() method is a getter method,
+    // for the ticket's status at the time.
+    public Ticket.TicketStatus getStatus() {
+        return this.status;
+    }
+
+    // The getTime() method is a getter method, for
+    // when the notification was recorded.
+    public Instant getTime() {
+        return this.time;
+    }
+
+    // The getFailedAttempts() method is a getter method, for the
+    // number of times sending the notification has failed.
+    public int getFailedAttempts() {
+        return this.failedAttempts;
+    }
+
+    // The recordFailedAttempt() method counts a failure to send
+    // the notification, and returns how many there have been.
+    int recordFailedAttempt() {
+        return ++this.failedAttempts;
+    }
+}
@@ -0,0 +1,39 @@
+// The NotificationDigest class groups together every notification
+// for one recipient over a dispatch interval, so they are sent a
+// single message rather than one message per ticket change.
+
+import java.util.List;
+
+public class NotificationDigest {
+    private final User recipient;
+    private final List<Notification> notifications;
+
+    // The NotificationDigest() method is the constructor
+    // for the NotificationDigest class.
+    public NotificationDigest(User recipient, List<Notification> notifications) {
+        this.recipient = recipient;
+        this.notifications = notifications;
+    }
+
+    // The getRecipient() method is a getter method,
+    // for the user the digest is for.
+    public User getRecipient() {
+        return this.recipient;
+    }
+
+    // The getNotifications() method is a getter method, for
+    // the notifications in the digest, oldest first.
+    public List<Notification> getNotifications() {
+        return this.notifications;
+    }
+
+    // The getSubject() method returns a subject line
+    // summarising the digest.
+    public String getSubject() {
+        if (notifications.size() == 1) {
+            Notification only = notifications.get(0);
+            return "SentinelShield: ticket " + only.getKind().name().toLowerCase();
+        }
+        return "SentinelShield: " + notifications.size() + " ticket updates";
+    }
+}
@@ -0,0 +1,159 @@
+// The NotificationDispatcher class regularly empties the
+// NotificationOutbox, combines each recipient's notifications into
+// a single digest, and hands the digests to a NotificationTransport
+// in batches. It runs on a background scheduler, so delivering
+// notifications never slows down a change to a ticket.
+//
+// If the transport fails, the unsent notifications are tried again
+// later, skipping twice as many runs after each failure in a row, up
+// to MAX_BACKOFF_RUNS. A notification which has failed MAX_ATTEMPTS
+// times is dropped and counted as dead, so a transport which never
+// recovers can't keep notifications forever.
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class NotificationDispatcher implements Runnable {
+    // The most times sending a notification is tried.
+    static final int MAX_ATTEMPTS = 5;
+
+    // The most runs skipped after the transport fails.
+    static final int MAX_BACKOFF_RUNS = 32;
+
+    private final NotificationOutbox outbox;
+    private final NotificationTransport transport;
+
+    // The most digests handed to the transport at once, and the
+    // most notifications taken from the outbox in a single run.
+    private final int batchSize;
+    private final int maxPerRun;
+
+    private final AtomicLong digestsSent = new AtomicLong();
+    private final AtomicLong deadNotifications = new AtomicLong();
+
+    // Only used by run(), which never runs twice at once
+    private int failuresInARow;
+    private int runsToSkip;
+    private ScheduledFuture<?> scheduled;
+
+    // The NotificationDispatcher() method is the constructor for
+    // the NotificationDispatcher class, using the default settings.
+    public NotificationDispatcher(NotificationOutbox outbox, NotificationTransport transport) {
+        this(outbox, transport, 100, 10000);
+    }
+
+    // This version of NotificationDispatcher() lets every setting be chosen.
+    public NotificationDispatcher(NotificationOutbox outbox, NotificationTransport transport, int batchSize,
+            int maxPerRun) {
+        this.outbox = outbox;
+        this.transport = transport;
+        this.batchSize = batchSize;
+        this.maxPerRun = maxPerRun;
+    }
+
+    // The start() method schedules the dispatcher to send a
+    // digest to each recipient once every interval.
+    public synchronized void start(ScheduledExecutorService scheduler, Duration interval) {
+        if (scheduled == null) {
+            scheduled = scheduler.scheduleWithFixedDelay(this, interval.toMillis(), interval.toMillis(),
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // The stop() method stops the dispatcher from running again.
+    public synchronized void stop() {
+        if (scheduled != null) {
+            scheduled.cancel(false);
+            scheduled = null;
+        }
+    }
+
+    // The getDigestsSent() method is a getter method, for the
+    // number of digests successfully handed to the transport.
+    public long getDigestsSent() {
+        return digestsSent.get();
+    }
+
+    // The getDeadNotifications() method is a getter method, for the
+    // number of notifications dropped after MAX_ATTEMPTS failures.
+    public long getDeadNotifications() {
+        return deadNotifications.get();
+    }
+
+    // The run() method sends everything waiting in the outbox,
+    // one digest per recipient. If the transport fails, the
+    // notifications of that batch and any after it are put back
+    // in the outbox to be tried again after the backoff.
+    @Override
+    public void run() {
+        if (runsToSkip > 0) {
+            runsToSkip--;
+            return;
+        }
+        Map<User, List<Notification>> byRecipient = new LinkedHashMap<>();
+        Notification notification;
+        int taken = 0;
+        while (taken < maxPerRun && (notification = outbox.poll()) != null) {
+            byRecipient.computeIfAbsent(notification.getRecipient(), r -> new ArrayList<>()).add(notification);
+            taken++;
+        }
+        if (byRecipient.isEmpty()) {
+            return;
+        }
+
+        List<NotificationDigest> digests = new ArrayList<>(byRecipient.size());
+        for (Map.Entry<User, List<Notification>> entry : byRecipient.entrySet()) {
+            digests.add(new NotificationDigest(entry.getKey(), entry.getValue()));
+        }
+        for (int from = 0; from < digests.size(); from += batchSize) {
+            List<NotificationDigest> batch = digests.subList(from, Math.min(from + batchSize, digests.size()));
+            try {
+                transport.deliver(batch);
+                digestsSent.addAndGet(batch.size());
+            } catch (IOException | RuntimeException e) {
+                failed(digests.subList(from, digests.size()), e);
+                return;
+            }
+        }
+        if (failuresInARow > 0) {
+            System.err.println("Notification delivery has recovered.");
+            failuresInARow = 0;
+        }
+    }
+
+    // The failed() method puts the unsent notifications back in the
+    // outbox, apart from those which have failed too often, and
+    // works out how many runs to skip before trying again. The
+    // failure is only reported once, rather than on every run.
+    private void failed(List<NotificationDigest> unsent, Exception e) {
+        long dead = 0;
+        for (NotificationDigest digest : unsent) {
+            List<Notification> retry = new ArrayList<>(digest.getNotifications().size());
+            for (Notification notification : digest.getNotifications()) {
+                if (notification.recordFailedAttempt() < MAX_ATTEMPTS) {
+                    retry.add(notification);
+                } else {
+                    dead++;
+                }
+            }
+            outbox.requeue(retry);
+        }
+        deadNotifications.addAndGet(dead);
+        if (failuresInARow == 0) {
+            System.err.println("Notification delivery failed, will retry with backoff: " + e);
+        }
+        if (dead > 0) {
+            System.err.println(dead + " notifications failed " + MAX_ATTEMPTS + " times, and were dropped.");
+        }
+        failuresInARow++;
+        runsToSkip = Math.min(MAX_BACKOFF_RUNS, (1 << Math.min(failuresInARow - 1, 30)) - 1);
+    }
+}
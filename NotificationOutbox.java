@@ -0,0 +1,99 @@
+// The NotificationOutbox class records who needs to be told about
+// each ticket change, at the moment the change is made. Recording a
+// notification only adds it to a lock-free queue, so it costs the
+// ticket change almost nothing, and the NotificationDispatcher
+// sends them later, away from the ticket change.
+//
+// The outbox holds at most a fixed number of notifications, so if
+// they can't be sent for a long time, it doesn't grow for ever.
+// Notifications recorded while it is full are dropped, and counted.
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class NotificationOutbox implements TicketListener {
+    // The most notifications held by default.
+    static final int DEFAULT_CAPACITY = 100_000;
+
+    private final ConcurrentLinkedQueue<Notification> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    private final int capacity;
+
+    // The NotificationOutbox() method is the constructor for the
+    // NotificationOutbox class, holding DEFAULT_CAPACITY notifications.
+    public NotificationOutbox() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    // This version of NotificationOutbox() lets the
+    // most notifications held be chosen.
+    public NotificationOutbox(int capacity) {
+        this.capacity = capacity;
+    }
+
+    // The ticketAssigned() method records that the new technician,
+    // and the ticket's submitter, should be told about the ticket
+    // being assigned or reassigned.
+    @Override
+    public void ticketAssigned(Ticket ticket, User oldTechnician, User newTechnician) {
+        Notification.Kind kind = oldTechnician == null ? Notification.Kind.Assigned : Notification.Kind.Reassigned;
+        Ticket.TicketStatus status = ticket.getTicketStatus();
+        record(new Notification(newTechnician, kind, ticket, newTechnician, status));
+        record(new Notification(ticket.getCreatedBy(), kind, ticket, newTechnician, status));
+    }
+
+    // The ticketStatusChanged() method records that the ticket's
+    // submitter should be told about the ticket being completed.
+    @Override
+    public void ticketStatusChanged(Ticket ticket, Ticket.TicketStatus oldStatus, Ticket.TicketStatus newStatus) {
+        if (oldStatus == Ticket.TicketStatus.Open && newStatus != Ticket.TicketStatus.Open) {
+            record(new Notification(ticket.getCreatedBy(), Notification.Kind.Completed, ticket,
+                    ticket.getAssignedTechnician(), newStatus));
+        }
+    }
+
+    // The poll() method takes the oldest pending notification
+    // out of the outbox, or returns null if it is empty.
+    public Notification poll() {
+        Notification notification = pending.poll();
+        if (notification != null) {
+            size.decrementAndGet();
+        }
+        return notification;
+    }
+
+    // The requeue() method puts notifications which could not
+    // be delivered back in the outbox, to be tried again.
+    public void requeue(Collection<Notification> notifications) {
+        // Already counted against the capacity when first recorded,
+        // and never more than a single run's worth
+        size.addAndGet(notifications.size());
+        pending.addAll(notifications);
+    }
+
+    // The getDropped() method is a getter method, for the number
+    // of notifications dropped because the outbox was full.
+    public long getDropped() {
+        return this.dropped.get();
+    }
+
+    // The record() method adds a notification, unless the
+    // outbox is full, in which case it is dropped.
+    private void record(Notification notification) {
+        if (size.incrementAndGet() > capacity) {
+            size.decrementAndGet();
+            dropped.incrementAndGet();
+            return;
+        }
+        pending.add(notification);
+    }
+
+    // The isEmpty() method checks whether there are
+    // any notifications waiting to be sent.
+    public boolean isEmpty() {
+        return pending.isEmpty();
+    }
+}
@@ -0,0 +1,14 @@
+// The NotificationTransport interface is used to deliver digests
+// of notifications to their recipients. Different transports can
+// be plugged into the NotificationDispatcher, such as one which
+// writes the messages to a file for testing.
+
+import java.io.IOException;
+import java.util.List;
+
+public interface NotificationTransport {
+    // The deliver() method sends a batch of digests. If it throws,
+    // the dispatcher will try the whole batch again later, so it
+    // should leave none of the batch sent.
+    void deliver(List<NotificationDigest> digests) throws IOException;
+}
@@ -0,0 +1,124 @@
+// The PasswordHasher class turns passwords into salted PBKDF2 hashes,
+// and checks passwords against them, so users' passwords are never
+// stored. A hash is stored as a single string holding everything
+// needed to check it again:
+//
+//     pbkdf2-sha256$<iterations>$<salt>$<hash>
+//
+// with the salt and hash in Base64. Hashing is deliberately slow, and
+// the number of iterations can be raised over time. Any stored hash
+// made with fewer iterations is reported by needsRehash() so it can
+// be upgraded the next time the user logs in. A stored value which
+// isn't a hash never matches any password, which is how accounts
+// stored with RESET_REQUIRED are kept shut until a password is set.
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+public class PasswordHasher {
+    // The default number of iterations, as recommended
+    // for PBKDF2 with HMAC-SHA256.
+    static final int DEFAULT_ITERATIONS = 310_000;
+
+    // Stored in place of a hash for an account which has no
+    // password yet, such as one imported in bulk.
+    static final String RESET_REQUIRED = "reset-required";
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String PREFIX = "pbkdf2-sha256$";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final int iterations;
+
+    // The PasswordHasher() method is the constructor for
+    // the PasswordHasher class, using the default iterations.
+    public PasswordHasher() {
+        this(DEFAULT_ITERATIONS);
+    }
+
+    // This version of PasswordHasher() lets the number of
+    // iterations, and so the time each hash takes, be chosen.
+    public PasswordHasher(int iterations) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("Iterations must be at least 1");
+        }
+        this.iterations = iterations;
+    }
+
+    // The getIterations() method is a getter method, for
+    // the number of iterations new hashes are made with.
+    public int getIterations() {
+        return this.iterations;
+    }
+
+    // The hash() method returns a new salted hash of a password.
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        byte[] hash = pbkdf2(password, salt, iterations);
+        Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + iterations + "$" + base64.encodeToString(salt) + "$" + base64.encodeToString(hash);
+    }
+
+    // The verify() method checks a password against a stored hash.
+    // The comparison takes the same time wherever the first
+    // difference is.
+    public boolean verify(String password, String stored) {
+        if (stored == null || !stored.startsWith(PREFIX)) {
+            return false;
+        }
+        String[] parts = stored.substring(PREFIX.length()).split("\\$");
+        if (parts.length != 3) {
+            return false;
+        }
+        try {
+            int storedIterations = Integer.parseInt(parts[0]);
+            byte[] salt = Base64.getDecoder().decode(parts[1]);
+            byte[] expected = Base64.getDecoder().decode(parts[2]);
+            return MessageDigest.isEqual(pbkdf2(password, salt, storedIterations), expected);
+        } catch (IllegalArgumentException e) {
+            // A damaged hash never matches
+            return false;
+        }
+    }
+
+    // The needsRehash() method checks whether a stored value should
+    // be replaced with a new hash, as it either isn't a hash at all,
+    // or was made with fewer iterations than are used now.
+    public boolean needsRehash(String stored) {
+        if (stored == null || !stored.startsWith(PREFIX)) {
+            return true;
+        }
+        int end = stored.indexOf('$', PREFIX.length());
+        try {
+            return end < 0 || Integer.parseInt(stored.substring(PREFIX.length(), end)) < iterations;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    // The isResetRequired() method checks whether a stored value
+    // says the user must set a password before they can log in.
+    public static boolean isResetRequired(String stored) {
+        return RESET_REQUIRED.equals(stored);
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            // This algorithm is part of every standard JDK
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
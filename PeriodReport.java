@@ -0,0 +1,304 @@
+// The PeriodReport class holds the results of a period report,
+// breaking down the tickets created within a date range by day,
+// severity, tier and technician. The report is built in a single
+// parallel pass using fork-join tasks, each of which fills in its
+// own partial report, so the partial results can be merged without
+// any shared state between the threads.
+//
+// The snapshot fixes which technician each ticket is counted under,
+// but each ticket's status, severity and completion date are read as
+// they are when it is counted, once per ticket.
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+public class PeriodReport {
+    // The number of tickets a single task will count before it
+    // stops splitting its range into smaller tasks.
+    private static final int SPLIT_THRESHOLD = 4096;
+
+    // The upper bounds (inclusive, in days) of each bucket of
+    // the time active distribution. Anything over the last
+    // bound falls into a final overflow bucket.
+    static final int[] TIME_ACTIVE_BOUNDS = { 1, 2, 3, 7, 14, 30, 90 };
+    static final int TIME_ACTIVE_BUCKETS = TIME_ACTIVE_BOUNDS.length + 1;
+
+    private static final int STATUS_COUNT = Ticket.TicketStatus.values().length;
+    private static final int SEVERITY_COUNT = Ticket.Severity.values().length;
+    private static final int TIER_COUNT = ServiceDesk.Tier.values().length;
+
+    private final LocalDate startDate, endDate;
+    private long ticketsSubmitted;
+    private final long[] countByStatus = new long[STATUS_COUNT];
+    private final long[][] countBySeverity = new long[SEVERITY_COUNT][STATUS_COUNT];
+    private final long[][] countByTier = new long[TIER_COUNT][STATUS_COUNT];
+    private final long[][] timeActiveBySeverity = new long[SEVERITY_COUNT][TIME_ACTIVE_BUCKETS];
+    private final long[][] timeActiveByTier = new long[TIER_COUNT][TIME_ACTIVE_BUCKETS];
+    private final Map<LocalDate, long[]> countByDay = new HashMap<>();
+    private final Map<LocalDate, long[]> timeActiveByDay = new HashMap<>();
+    private final Map<User, long[]> countByTechnician = new HashMap<>();
+    private final Map<User, long[]> timeActiveByTechnician = new HashMap<>();
+
+    // The PeriodReport() method is the constructor for the
+    // PeriodReport class. It creates an empty report for the range.
+    PeriodReport(LocalDate startDate, LocalDate endDate) {
+        this.startDate = startDate;
+        this.endDate = endDate;
+    }
+
+    // The generate() method builds a report for every ticket in the
+    // snapshot created between the two dates (inclusive), splitting
+    // the work across the common fork-join pool.
+    static PeriodReport generate(DeskSnapshot snapshot, LocalDate startDate, LocalDate endDate) {
+        List<ReportTask> tasks = new ArrayList<>();
+        for (ServiceDesk.Tier tier : ServiceDesk.Tier.values()) {
+            User[] technicians = snapshot.getTechnicians(tier);
+            for (int i = 0; i < technicians.length; i++) {
+                List<Ticket> tickets = snapshot.getTickets(tier, i);
+                tasks.add(new ReportTask(startDate, endDate, technicians[i], tier, tickets, 0, tickets.size()));
+            }
+        }
+        return ForkJoinPool.commonPool().invoke(new RosterTask(startDate, endDate, tasks));
+    }
+
+    // The daysActive() method calculates how many days a ticket
+    // was active for, matching the "Time Active" shown for a ticket.
+    static long daysActive(LocalDate dateCreated, LocalDate dateCompleted) {
+        return Math.abs(ChronoUnit.DAYS.between(dateCreated, dateCompleted)) + 1;
+    }
+
+    // The bucketFor() method returns the index of the time active
+    // bucket that a number of days falls into.
+    static int bucketFor(long days) {
+        for (int i = 0; i < TIME_ACTIVE_BOUNDS.length; i++) {
+            if (days <= TIME_ACTIVE_BOUNDS[i]) {
+                return i;
+            }
+        }
+        return TIME_ACTIVE_BOUNDS.length;
+    }
+
+    // The bucketLabel() method returns a readable label for
+    // a time active bucket, such as "4-7".
+    static String bucketLabel(int bucket) {
+        if (bucket == TIME_ACTIVE_BOUNDS.length) {
+            return (TIME_ACTIVE_BOUNDS[bucket - 1] + 1) + "+";
+        }
+        int low = bucket == 0 ? 1 : TIME_ACTIVE_BOUNDS[bucket - 1] + 1;
+        int high = TIME_ACTIVE_BOUNDS[bucket];
+        return low == high ? Integer.toString(low) : low + "-" + high;
+    }
+
+    // The record() method counts a single ticket into this report.
+    // It is only ever called on a partial report owned by one task.
+    private void record(Ticket ticket, User technician, ServiceDesk.Tier tier) {
+        LocalDate created = ticket.getDateCreated();
+        if (created.isBefore(startDate) || created.isAfter(endDate)) {
+            return;
+        }
+        // Read the ticket's state once, so it can't change part way through
+        Ticket.State state = ticket.getState();
+        Ticket.TicketStatus status = state.ticketStatus;
+        Ticket.Severity severity = state.severity;
+        int statusIndex = status.ordinal();
+
+        ticketsSubmitted++;
+        countByStatus[statusIndex]++;
+        countByTier[tier.ordinal()][statusIndex]++;
+        countByDay.computeIfAbsent(created, d -> new long[STATUS_COUNT])[statusIndex]++;
+        countByTechnician.computeIfAbsent(technician, t -> new long[STATUS_COUNT])[statusIndex]++;
+        if (severity != null) {
+            countBySeverity[severity.ordinal()][statusIndex]++;
+        }
+
+        // Only completed tickets have a time active
+        if (status != Ticket.TicketStatus.Open && state.dateCompleted != null) {
+            int bucket = bucketFor(daysActive(created, state.dateCompleted));
+            timeActiveByTier[tier.ordinal()][bucket]++;
+            timeActiveByDay.computeIfAbsent(created, d -> new long[TIME_ACTIVE_BUCKETS])[bucket]++;
+            timeActiveByTechnician.computeIfAbsent(technician, t -> new long[TIME_ACTIVE_BUCKETS])[bucket]++;
+            if (severity != null) {
+                timeActiveBySeverity[severity.ordinal()][bucket]++;
+            }
+        }
+    }
+
+    // The merge() method adds the counts of another partial report
+    // into this one, returning this report.
+    private PeriodReport merge(PeriodReport other) {
+        ticketsSubmitted += other.ticketsSubmitted;
+        addInto(countByStatus, other.countByStatus);
+        for (int i = 0; i < SEVERITY_COUNT; i++) {
+            addInto(countBySeverity[i], other.countBySeverity[i]);
+            addInto(timeActiveBySeverity[i], other.timeActiveBySeverity[i]);
+        }
+        for (int i = 0; i < TIER_COUNT; i++) {
+            addInto(countByTier[i], other.countByTier[i]);
+            addInto(timeActiveByTier[i], other.timeActiveByTier[i]);
+        }
+        mergeInto(countByDay, other.countByDay);
+        mergeInto(timeActiveByDay, other.timeActiveByDay);
+        mergeInto(countByTechnician, other.countByTechnician);
+        mergeInto(timeActiveByTechnician, other.timeActiveByTechnician);
+        return this;
+    }
+
+    private static void addInto(long[] target, long[] source) {
+        for (int i = 0; i < target.length; i++) {
+            target[i] += source[i];
+        }
+    }
+
+    private static <K> void mergeInto(Map<K, long[]> target, Map<K, long[]> source) {
+        for (Map.Entry<K, long[]> entry : source.entrySet()) {
+            long[] existing = target.putIfAbsent(entry.getKey(), entry.getValue());
+            if (existing != null) {
+                addInto(existing, entry.getValue());
+            }
+        }
+    }
+
+    // The getStartDate() method is a getter method,
+    // for the first day covered by the report.
+    public LocalDate getStartDate() {
+        return this.startDate;
+    }
+
+    // The getEndDate() method is a getter method,
+    // for the last day covered by the report.
+    public LocalDate getEndDate() {
+        return this.endDate;
+    }
+
+    // The getTicketsSubmitted() method is a getter method,
+    // for the number of tickets created in the period.
+    public long getTicketsSubmitted() {
+        return this.ticketsSubmitted;
+    }
+
+    // The getCount() method returns the number of tickets
+    // in the period with the given status.
+    public long getCount(Ticket.TicketStatus status) {
+        return this.countByStatus[status.ordinal()];
+    }
+
+    // The getCountBySeverity() method returns the status counts
+    // for a severity, indexed by TicketStatus ordinal.
+    public long[] getCountBySeverity(Ticket.Severity severity) {
+        return this.countBySeverity[severity.ordinal()];
+    }
+
+    // The getCountByTier() method returns the status counts
+    // for a tier, indexed by TicketStatus ordinal.
+    public long[] getCountByTier(ServiceDesk.Tier tier) {
+        return this.countByTier[tier.ordinal()];
+    }
+
+    // The getTimeActiveBySeverity() method returns the time active
+    // distribution of completed tickets of a severity.
+    public long[] getTimeActiveBySeverity(Ticket.Severity severity) {
+        return this.timeActiveBySeverity[severity.ordinal()];
+    }
+
+    // The getTimeActiveByTier() method returns the time active
+    // distribution of completed tickets of a tier.
+    public long[] getTimeActiveByTier(ServiceDesk.Tier tier) {
+        return this.timeActiveByTier[tier.ordinal()];
+    }
+
+    // The getCountByDay() method returns the status counts for
+    // each day which had at least one ticket created.
+    public Map<LocalDate, long[]> getCountByDay() {
+        return this.countByDay;
+    }
+
+    // The getTimeActiveByDay() method returns the time active
+    // distribution of completed tickets created on each day.
+    public Map<LocalDate, long[]> getTimeActiveByDay() {
+        return this.timeActiveByDay;
+    }
+
+    // The getCountByTechnician() method returns the status counts
+    // for each technician with tickets in the period.
+    public Map<User, long[]> getCountByTechnician() {
+        return this.countByTechnician;
+    }
+
+    // The getTimeActiveByTechnician() method returns the time active
+    // distribution of each technician's completed tickets.
+    public Map<User, long[]> getTimeActiveByTechnician() {
+        return this.timeActiveByTechnician;
+    }
+
+    // The RosterTask class forks one ReportTask per technician,
+    // and merges their partial reports together.
+    private static class RosterTask extends RecursiveTask<PeriodReport> {
+        private static final long serialVersionUID = 1L;
+
+        private final LocalDate startDate, endDate;
+        private final List<ReportTask> tasks;
+
+        RosterTask(LocalDate startDate, LocalDate endDate, List<ReportTask> tasks) {
+            this.startDate = startDate;
+            this.endDate = endDate;
+            this.tasks = tasks;
+        }
+
+        @Override
+        protected PeriodReport compute() {
+            invokeAll(tasks);
+            PeriodReport report = new PeriodReport(startDate, endDate);
+            for (ReportTask task : tasks) {
+                report.merge(task.join());
+            }
+            return report;
+        }
+    }
+
+    // The ReportTask class counts a range of a single technician's
+    // tickets, splitting the range in half until it is small enough
+    // to count directly.
+    private static class ReportTask extends RecursiveTask<PeriodReport> {
+        private static final long serialVersionUID = 1L;
+
+        private final LocalDate startDate, endDate;
+        private final User technician;
+        private final ServiceDesk.Tier tier;
+        private final List<Ticket> tickets;
+        private final int from, to;
+
+        ReportTask(LocalDate startDate, LocalDate endDate, User technician, ServiceDesk.Tier tier,
+                List<Ticket> tickets, int from, int to) {
+            this.startDate = startDate;
+            this.endDate = endDate;
+            this.technician = technician;
+            this.tier = tier;
+            this.tickets = tickets;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected PeriodReport compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                PeriodReport partial = new PeriodReport(startDate, endDate);
+                for (int i = from; i < to; i++) {
+                    partial.record(tickets.get(i), technician, tier);
+                }
+                return partial;
+            }
+            int middle = (from + to) >>> 1;
+            ReportTask left = new ReportTask(startDate, endDate, technician, tier, tickets, from, middle);
+            ReportTask right = new ReportTask(startDate, endDate, technician, tier, tickets, middle, to);
+            left.fork();
+            PeriodReport rightReport = right.compute();
+            return left.join().merge(rightReport);
+        }
+    }
+}
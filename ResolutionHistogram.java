@@ -0,0 +1,87 @@
+// The ResolutionHistogram class is used to record how long
+// tickets took to be resolved, in seconds. It uses a fixed set of
+// buckets which grow exponentially in size, so it takes the same
+// small amount of memory however many tickets are recorded, and any
+// percentile can be answered by walking the fixed set of buckets,
+// without keeping or rescanning any ticket history.
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class ResolutionHistogram {
+    // Each power of two is split into 16 buckets, which keeps
+    // every answer within about 6% of the true value.
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // Anything longer than this (over two thousand years)
+    // is counted in the last bucket.
+    private static final int MAX_SHIFT = 31;
+    private static final long MAX_VALUE = ((long) SUB_BUCKETS << (MAX_SHIFT + 1)) - 1;
+    private static final int BUCKET_COUNT = (MAX_SHIFT + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+
+    // The record() method adds a single time to resolve,
+    // in seconds, to the histogram.
+    public void record(long seconds) {
+        buckets.incrementAndGet(indexFor(Math.min(Math.max(seconds, 0), MAX_VALUE)));
+        count.incrementAndGet();
+    }
+
+    // The getCount() method is a getter method,
+    // for the number of times recorded.
+    public long getCount() {
+        return count.get();
+    }
+
+    // The getPercentile() method returns the time to resolve, in
+    // seconds, that the given fraction of tickets (such as 0.9 for
+    // the 90th percentile) were resolved within. It returns -1 if
+    // nothing has been recorded yet.
+    public long getPercentile(double fraction) {
+        long total = count.get();
+        if (total == 0) {
+            return -1;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return (lowerBound(i) + upperBound(i)) / 2;
+            }
+        }
+        // A record() was counted but its bucket was not yet visible
+        return upperBound(BUCKET_COUNT - 1);
+    }
+
+    // The indexFor() method returns the bucket a value falls into.
+    // Values below 16 each get their own bucket, after that each
+    // power of two is split into 16 equally sized buckets.
+    private static int indexFor(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        return (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+    }
+
+    private static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        return ((long) (SUB_BUCKETS + index % SUB_BUCKETS + 1) << shift) - 1;
+    }
+}
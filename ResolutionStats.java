@@ -0,0 +1,74 @@
+// The ResolutionStats class keeps a ResolutionHistogram of
+// how long tickets take to resolve for each technician, tier and
+// severity. It listens for tickets being completed, so the
+// histograms are always up to date and never need to be rebuilt
+// from the ticket history.
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class ResolutionStats implements TicketListener {
+    // What forTechnician() returns for a technician who has not
+    // resolved any tickets. Nothing is ever recorded in it.
+    private static final ResolutionHistogram EMPTY = new ResolutionHistogram();
+
+    private final ServiceDesk serviceDesk;
+    private final Map<User, ResolutionHistogram> byTechnician = new ConcurrentHashMap<>();
+    private final ResolutionHistogram[] byTier = new ResolutionHistogram[ServiceDesk.Tier.values().length];
+    private final ResolutionHistogram[] bySeverity = new ResolutionHistogram[Ticket.Severity.values().length];
+
+    // The ResolutionStats() method is the constructor for
+    // the ResolutionStats class.
+    public ResolutionStats(ServiceDesk serviceDesk) {
+        this.serviceDesk = serviceDesk;
+        for (int i = 0; i < byTier.length; i++) {
+            byTier[i] = new ResolutionHistogram();
+        }
+        for (int i = 0; i < bySeverity.length; i++) {
+            bySeverity[i] = new ResolutionHistogram();
+        }
+    }
+
+    // The ticketStatusChanged() method records the time to resolve
+    // of a ticket when it moves from Open to either of the
+    // completed statuses. A ticket which is reopened and completed
+    // again is only counted the first time.
+    @Override
+    public void ticketStatusChanged(Ticket ticket, Ticket.TicketStatus oldStatus, Ticket.TicketStatus newStatus) {
+        if (oldStatus != Ticket.TicketStatus.Open || newStatus == Ticket.TicketStatus.Open
+                || !ticket.markResolved()) {
+            return;
+        }
+        long seconds = Duration.between(ticket.getTimeCreated(), Instant.now()).getSeconds();
+        User technician = ticket.getAssignedTechnician();
+        if (technician != null) {
+            byTechnician.computeIfAbsent(technician, t -> new ResolutionHistogram()).record(seconds);
+            ServiceDesk.Tier tier = serviceDesk.tierOf(technician);
+            if (tier != null) {
+                byTier[tier.ordinal()].record(seconds);
+            }
+        }
+        if (ticket.getSeverity() != null) {
+            bySeverity[ticket.getSeverity().ordinal()].record(seconds);
+        }
+    }
+
+    // The forTechnician() method returns the histogram of a
+    // technician, which is empty if they have not resolved
+    // any tickets yet.
+    public ResolutionHistogram forTechnician(User technician) {
+        return byTechnician.getOrDefault(technician, EMPTY);
+    }
+
+    // The forTier() method returns the histogram of a tier.
+    public ResolutionHistogram forTier(ServiceDesk.Tier tier) {
+        return byTier[tier.ordinal()];
+    }
+
+    // The forSeverity() method returns the histogram of a severity.
+    public ResolutionHistogram forSeverity(Ticket.Severity severity) {
+        return bySeverity[severity.ordinal()];
+    }
+}
@@ -8,12 +8,17 @@ import java.util.Scanner;
 import java.util.function.Predicate;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Date;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
@@ -22,25 +27,80 @@ import java.time.temporal.ChronoUnit;
 public class SentinelShield {
 
     private Scanner console = new Scanner(System.in);
-    private Map<String, User> users = new HashMap<>();
+    private DepartmentHost host;
+    private Department department;
+    private UserDirectory users;
     private ServiceDesk serviceDesk;
+    private CredentialVerifier verifier;
+    private TicketExporter exporter = new TicketExporter();
+    private TableRenderer table = new TableRenderer(System.out);
+    private static final DateTimeFormatter CHANGE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss")
+            .withZone(ZoneId.systemDefault());
     private User currentUser;
-    private Date startDate, endDate;
+    private Session session;
+    private LocalDate startDate, endDate;
 
-    // The PASSWORD_REGEX is the ReGex string used
-    // to verify, if the password provided meets the
-    // criteria outlined, in the assignment
-    // specification. It helps ensure that new passwords
-    // are always correct as per the specification.
-    private final String PASSWORD_REGEX = "^(?=.*[a-z])(?=.*[A-Z])(?=.*\\d)[a-zA-Z0-9]{20,}$";
+    // The LIST_PAGE_SIZE is the number of tickets shown
+    // on each page of a long listing.
+    private static final int LIST_PAGE_SIZE = 25;
+
+    // The LOGIN_QUEUE_SIZE is the number of logins which
+    // can wait for a password check before more are turned
+    // away as busy.
+    private static final int LOGIN_QUEUE_SIZE = 256;
+
+    // The EVENT_LOG_CAPACITY is the number of events which can
+    // wait to be written to the event log, and the log is rolled
+    // over at EVENT_LOG_FILE_BYTES, keeping EVENT_LOG_FILES files.
+    private static final int EVENT_LOG_CAPACITY = 65536;
+    private static final long EVENT_LOG_FILE_BYTES = 16L * 1024 * 1024;
+    private static final int EVENT_LOG_FILES = 5;
 
     // The SentinelShield() method is a constructor
     // used by the SentinelShield class so as
     // to construct and instantiate the variables
     // as necessary.
-    public SentinelShield(Map<String, User> users, ServiceDesk serviceDesk) {
-        this.users = users;
-        this.serviceDesk = serviceDesk;
+    public SentinelShield(DepartmentHost host, CredentialVerifier verifier) {
+        this.host = host;
+        this.verifier = verifier;
+    }
+
+    // The chooseDepartment() method asks which department the user
+    // wants to use, if there is more than one, and works with that
+    // department's accounts and service desk from then on.
+    private void chooseDepartment() {
+        List<Department> departments = host.getDepartments();
+        Department chosen = departments.get(0);
+        if (departments.size() > 1) {
+            StringBuilder menu = new StringBuilder("Please choose your department:\n");
+            for (int i = 0; i < departments.size(); i++) {
+                menu.append("(").append(i + 1).append(") ").append(departments.get(i).getName()).append("\n");
+            }
+            String choice = getUserInput(menu.toString(), s -> isMenuOption(s, departments.size()),
+                    "Please enter a number from 1 to " + departments.size() + ".");
+            chosen = departments.get(Integer.parseInt(choice) - 1);
+        }
+        department = chosen;
+        users = chosen.getUsers();
+        serviceDesk = chosen.getServiceDesk();
+    }
+
+    // The isMenuOption() method checks whether the input
+    // is the number of one of the options of a menu, from
+    // 1 up to the number of options.
+    private boolean isMenuOption(String input, int options) {
+        // Leading zeros aren't allowed, so each option
+        // can only be entered one way
+        if (input.isEmpty() || input.length() > 9 || input.charAt(0) == '0') {
+            return false;
+        }
+        for (int i = 0; i < input.length(); i++) {
+            if (input.charAt(i) < '0' || input.charAt(i) > '9') {
+                return false;
+            }
+        }
+        int option = Integer.parseInt(input);
+        return option >= 1 && option <= options;
     }
 
     // The getUserInput() method is a method
@@ -63,25 +123,20 @@ public class SentinelShield {
         return getUserInput(prompt, s -> true, "");
     }
 
-    // Takes user input and attempts to authenticate them from the map of users
-    // Returns a boolean, and updates private variable currentUser if login
-    // successful.
-    private boolean validateLogin(String email, String password) {
-        // Login validation is false until checks pass
-        boolean isValid = false;
-        // Find the user email
-        if (users.containsKey(email)) {
-            // Store the user object for easy access in the rest of the block
-            User user = users.get(email);
-            // Check if the passwords match
-            if (user.getPassword().equals(password)) {
-                // Login is valid
-                isValid = true;
-                // Store the use for the session
-                currentUser = user;
-            }
+    // Takes user input and attempts to authenticate them from the directory of users
+    // Returns the result of the check, and starts a session for the user, updating
+    // private variable currentUser, if login successful.
+    private CredentialVerifier.Result validateLogin(String email, String password) {
+        // Find the user email, in a single lookup. The password is checked
+        // even if there is no such user, so the login takes as long either way
+        User user = users.get(email);
+        CredentialVerifier.Result result = verifier.verify(user, password);
+        if (result == CredentialVerifier.Result.Accepted) {
+            // Store the use for the session
+            session = host.getSessions().open(user, department);
+            currentUser = user;
         }
-        return isValid;
+        return result;
     }
 
     // The loginScreen() method, handles the user interface
@@ -92,10 +147,19 @@ public class SentinelShield {
         // Loop until the user logs in successfully
         email = getUserInput("Please enter your email: ");
         password = getUserInput("Please enter your password: ");
-        if (!validateLogin(email, password)) {
-            System.out.println("Invalid credentials");
+        CredentialVerifier.Result result = validateLogin(email, password);
+        if (result == CredentialVerifier.Result.Busy) {
+            System.out.println("The system is busy, please try again shortly.");
+            return;
         }
-        if (!validateLogin(email, password)) {
+        if (result != CredentialVerifier.Result.Accepted) {
+            User user = users.get(email);
+            if (user != null && PasswordHasher.isResetRequired(user.getPasswordHash())) {
+                // An imported account has no password until one is set
+                System.out.println("Please set a password with Forgot Password before logging in.");
+            } else {
+                System.out.println("Invalid credentials");
+            }
             return;
         }
         // Print login success message based on whether or not user is technician
@@ -104,20 +168,57 @@ public class SentinelShield {
         } else {
             viewStaffMenu();
         }
+        host.getSessions().close(session.getToken());
+        session = null;
+        currentUser = null;
+    }
+
+    // The isSessionActive() method checks the user's session hasn't
+    // ended from being left unused, telling them to log in again if
+    // it has, and records that it is being used if it hasn't.
+    private boolean isSessionActive() {
+        if (host.getSessions().get(session.getToken()) == null) {
+            System.out.println("\nYour session has expired, please log in again.\n");
+            return false;
+        }
+        return true;
+    }
 
+    // The printDashboard() method prints the user's number of open
+    // tickets, and the tickets of theirs most recently closed, from
+    // their session's dashboard.
+    private void printDashboard() {
+        Dashboard dashboard = session.getDashboard();
+        int openCount = dashboard.getOpenCount();
+        System.out.println("You have " + openCount + " open ticket" + (openCount == 1 ? "" : "s") + ".");
+        List<Ticket> closures = dashboard.getRecentClosures();
+        if (!closures.isEmpty()) {
+            System.out.println("Recently closed:");
+            table.cell("Severity", 10).cell("Status", 23).cell("Description", 15).endRow();
+            for (Ticket t : closures) {
+                table.cell(t.getSeverity().name(), 10).cell(t.getTicketStatusString(), 23)
+                        .cell(t.getDescription(), 15).endRow();
+            }
+            table.endRow().flush();
+        }
     }
 
     // The forgotPasswordScreen() method, handles the user interface
     // and communication with the user, for the forgot password screen.
     private void forgotPasswordScreen() {
         String usernameString = getUserInput("Please enter your email: ");
-        if (users.containsKey(usernameString)) {
-            User user = users.get(usernameString);
+        User user = users.get(usernameString);
+        if (user != null) {
             String newPassword = getUserInput(
                     "Please enter your Password, it must be at least 20 characters, and contain at least one uppercase letter, one lowercase letter, and one number:",
-                    s -> s.matches(PASSWORD_REGEX) && !user.getPassword().equals(s),
+                    s -> Validators.isValidPassword(s) && Boolean.FALSE.equals(verifier.matches(user, s)),
                     "Choose a different password that has at least 20 characters, and contain at least 1 uppercase, lowercase, and digit.");
-            user.setPassword(newPassword);
+            String passwordHash = verifier.hash(newPassword);
+            if (passwordHash == null) {
+                System.out.println("The system is busy, please try again shortly.");
+                return;
+            }
+            user.setPasswordHash(passwordHash);
             System.out.println("Your password is has been changed.");
         } else {
             System.out.println("User not found.");
@@ -128,12 +229,14 @@ public class SentinelShield {
     // and communication with the user, for the signup screen.
     private void signupScreen() {
         String email = "";
-        while (email.isEmpty() || users.containsKey(email)) {
+        boolean taken = true;
+        while (taken) {
             email = getUserInput(
                     "Please enter your Email: ",
-                    s -> s.matches("^([a-zA-Z0-9]+\\.?)*[a-zA-Z0-9]@([a-zA-Z0-9]+\\.?)+[a-zA-Z0-9]$"),
+                    Validators::isValidEmail,
                     "Invalid email address.\nAddress must conform to RFC 5322.\nPlease write your email address, starting with numbers and letters,\nthen the '@' symbol, then a domain name, including a '.', followed by the TLD.\nEmail: ");
-            if (users.containsKey(email)) {
+            taken = users.contains(email);
+            if (taken) {
                 System.out.println("There is already an account with that email. Try a different email.");
             }
         }
@@ -147,13 +250,21 @@ public class SentinelShield {
                 "Enter a name.\nLast Name: ");
         String phone = getUserInput(
                 "Please enter your Phone number: ",
-                s -> s.matches("^\\+?\\d{2,4} ?\\d{2,4} ?(\\d{2,4}) ?(\\d{2,4})?$"),
+                Validators::isValidPhone,
                 "Invalid phone number. Please enter a valid Australian phone number, listing only the digits, without any other characters.\nPhone number: ");
         String password = getUserInput(
                 "Please enter your Password, it must be at least 20 characters, and contain at least one uppercase letter, one lowercase letter, and one number:\n",
-                s -> s.matches(PASSWORD_REGEX),
+                Validators::isValidPassword,
                 "Password must be at least 20 characters, and contain at least 1 uppercase, lowercase, and digit.");
-        users.put(email, new User(email, firstName, lastName, phone, password, false));
+        String passwordHash = verifier.hash(password);
+        if (passwordHash == null) {
+            System.out.println("The system is busy. Please sign up again shortly.");
+            return;
+        }
+        // Someone else may have taken the email in the meantime
+        if (!users.addAccount(email, firstName, lastName, phone, passwordHash)) {
+            System.out.println("There is already an account with that email. Please sign up again.");
+        }
     }
 
     // The signupScreen() method, handles the user interface
@@ -165,7 +276,11 @@ public class SentinelShield {
                 + "(2) View your tickets\n"
                 + "(3) Logout\n";
         String userinputeString = "";
+        printDashboard();
         while (conloop) {
+            if (!isSessionActive()) {
+                return;
+            }
             // Refresh ticket status every time the menu is returned to
             serviceDesk.automaticallyRefreshTickets();
 
@@ -191,25 +306,147 @@ public class SentinelShield {
     // The printTicketDetails() method, prints a ticket's
     // details, as per the specification
     private void printTicketDetails(Ticket ticketToPrint) {
-        String formatString = """
-                ----------------------------
-                Author:       %s
-                Created:      %s
-                Severity:     %s
-                Status:       %s
-                Technician:   %s
-                Time Active:  %s days
-                ----------------------------
-                """;
-        System.out.printf(formatString,
-                ticketToPrint.getCreatedBy().getFirstName() + " " + ticketToPrint.getCreatedBy().getLastName(),
-                ticketToPrint.getDateCreated().format(DateTimeFormatter.ofPattern("dd/MM/yyyy")),
-                ticketToPrint.getSeverity().name(),
-                ticketToPrint.getTicketStatus().name(),
-                ticketToPrint.getAssignedTechnician().getFirstName() + " "
-                        + ticketToPrint.getAssignedTechnician().getLastName(),
-                ticketToPrint.getTicketStatus().name().equals("Open") ? "N/A"
-                        : daysBetween(ticketToPrint.getDateCreated(), ticketToPrint.getDateCompleted()));
+        // Written to the table renderer, so printing many tickets
+        // is a single write once the renderer is flushed
+        String rule = "----------------------------";
+        table.text(rule).endRow();
+        table.cell("Author:", 14).nameCell(ticketToPrint.getCreatedBy(), 0).endRow();
+        table.cell("Created:", 14).cell(ticketToPrint.getDateCreated(), TableRenderer.DAY_FORMAT, 0).endRow();
+        table.cell("Severity:", 14).text(ticketToPrint.getSeverity().name()).endRow();
+        table.cell("Status:", 14).text(ticketToPrint.getTicketStatus().name()).endRow();
+        table.cell("Technician:", 14).nameCell(ticketToPrint.getAssignedTechnician(), 0).endRow();
+        table.cell("Time Active:", 14);
+        if (ticketToPrint.getTicketStatus() == Ticket.TicketStatus.Open) {
+            table.text("N/A");
+        } else {
+            table.text(daysBetween(ticketToPrint.getDateCreated(), ticketToPrint.getDateCompleted()));
+        }
+        table.text(" days").endRow();
+        table.text(rule).endRow();
+    }
+
+    // The closedAndArchivedTicketsScreen() method shows a page of
+    // closed and archived tickets at a time, letting the user move
+    // between pages until they choose a ticket, or go back.
+    private void closedAndArchivedTicketsScreen(TicketCursor cursor) {
+        while (true) {
+            System.out.println("\nAll Closed and Archived Tickets (page " + cursor.getPage() + "): ");
+            table.cell(0, 3).cell("Name", 30).cell("Severity", 10).cell("Status", 23).cell("Description", 15)
+                    .endRow();
+            int row = cursor.getFirstRowNumber();
+            for (Ticket t : cursor.currentPage()) {
+                table.cell(row++, 3).nameCell(t.getAssignedTechnician(), 30).cell(t.getSeverity().name(), 10)
+                        .cell(t.getTicketStatusString(), 23).cell(t.getDescription(), 15).endRow();
+            }
+            table.endRow().flush();
+
+            String prompt = "\nSelect a ticket (number) to view and/or edit, "
+                    + (cursor.hasNextPage() ? "type 'n' for the next page, " : "")
+                    + (cursor.hasPreviousPage() ? "type 'p' for the previous page, " : "")
+                    + "or type 'q' to go back.\n";
+            String choice = getUserInput(prompt, s -> {
+                String lower = s.toLowerCase();
+                if (lower.equals("q") || lower.equals("n") || lower.equals("p")) {
+                    return true;
+                }
+                try {
+                    Integer.parseInt(s);
+                    return true;
+                } catch (NumberFormatException _e) {
+                    return false;
+                }
+            }, prompt).toLowerCase();
+            if (choice.equals("q")) {
+                return;
+            }
+            if (choice.equals("n")) {
+                if (!cursor.nextPage()) {
+                    System.out.println("This is the last page.");
+                }
+                continue;
+            }
+            if (choice.equals("p")) {
+                if (!cursor.previousPage()) {
+                    System.out.println("This is the first page.");
+                }
+                continue;
+            }
+            // The number is looked up directly in the rows already shown
+            Ticket ticket = cursor.getRow(Integer.parseInt(choice));
+            if (ticket == null) {
+                System.out.println("Please choose a valid ticket number.");
+            } else if (ticket.getIsArchived()) {
+                techViewArchivedTicketScreen(ticket);
+                System.out.println("\nThis ticket is archived, and cannot be modified.\n");
+            } else {
+                techViewIndividualTicketScreen(ticket);
+            }
+            return;
+        }
+    }
+
+    // The printPeriodReportBreakdown() method prints the
+    // per-day, per-severity, per-tier and per-technician
+    // breakdowns of a period report.
+    private void printPeriodReportBreakdown(PeriodReport report) {
+        String rowFormat = "%-30s%-8s%-10s%-12s%n";
+        System.out.println("\nBy day:");
+        System.out.printf(rowFormat, "Day", "Open", "Resolved", "Unresolved");
+        for (Map.Entry<LocalDate, long[]> entry : new TreeMap<>(report.getCountByDay()).entrySet()) {
+            long[] counts = entry.getValue();
+            System.out.printf(rowFormat, entry.getKey().format(TableRenderer.DAY_FORMAT),
+                    counts[0], counts[1], counts[2]);
+        }
+        System.out.println("\nBy severity:");
+        System.out.printf(rowFormat, "Severity", "Open", "Resolved", "Unresolved");
+        for (Ticket.Severity severity : Ticket.Severity.values()) {
+            long[] counts = report.getCountBySeverity(severity);
+            System.out.printf(rowFormat, severity.name(), counts[0], counts[1], counts[2]);
+        }
+        System.out.println("\nBy tier:");
+        System.out.printf(rowFormat, "Tier", "Open", "Resolved", "Unresolved");
+        for (ServiceDesk.Tier tier : ServiceDesk.Tier.values()) {
+            long[] counts = report.getCountByTier(tier);
+            System.out.printf(rowFormat, tier.name(), counts[0], counts[1], counts[2]);
+        }
+        System.out.println("\nBy technician:");
+        System.out.printf(rowFormat, "Technician", "Open", "Resolved", "Unresolved");
+        for (Map.Entry<User, long[]> entry : report.getCountByTechnician().entrySet()) {
+            long[] counts = entry.getValue();
+            System.out.printf(rowFormat, entry.getKey().getFirstName() + " " + entry.getKey().getLastName(),
+                    counts[0], counts[1], counts[2]);
+        }
+
+        // Time active of completed tickets, one column per bucket
+        StringBuilder header = new StringBuilder(String.format("%-30s", "Time Active (days)"));
+        for (int bucket = 0; bucket < PeriodReport.TIME_ACTIVE_BUCKETS; bucket++) {
+            header.append(String.format("%-8s", PeriodReport.bucketLabel(bucket)));
+        }
+        System.out.println("\n" + header);
+        for (Map.Entry<LocalDate, long[]> entry : new TreeMap<>(report.getTimeActiveByDay()).entrySet()) {
+            printTimeActiveRow(entry.getKey().format(TableRenderer.DAY_FORMAT), entry.getValue());
+        }
+        for (Ticket.Severity severity : Ticket.Severity.values()) {
+            printTimeActiveRow(severity.name(), report.getTimeActiveBySeverity(severity));
+        }
+        for (ServiceDesk.Tier tier : ServiceDesk.Tier.values()) {
+            printTimeActiveRow(tier.name(), report.getTimeActiveByTier(tier));
+        }
+        for (Map.Entry<User, long[]> entry : report.getTimeActiveByTechnician().entrySet()) {
+            printTimeActiveRow(entry.getKey().getFirstName() + " " + entry.getKey().getLastName(),
+                    entry.getValue());
+        }
+        System.out.println("");
+    }
+
+    // The printTimeActiveRow() method prints a single row
+    // of a time active distribution.
+    private void printTimeActiveRow(String label, long[] buckets) {
+        StringBuilder row = new StringBuilder(String.format("%-30s", label));
+        for (long count : buckets) {
+            row.append(String.format("%-8d", count));
+        }
+        System.out.println(row);
     }
 
     // The viewTechMenu() method displays the tech's menu
@@ -217,40 +454,51 @@ public class SentinelShield {
     private void viewTechMenu() {
         // Loop until the function returns
         System.out.println("\nWelcome, " + currentUser.getFirstName() + ".");
+        printDashboard();
         while (true) {
+            if (!isSessionActive()) {
+                return;
+            }
             // Refresh ticket status every time the menu is returned to
             serviceDesk.automaticallyRefreshTickets();
             String choice = getUserInput(
-                    "Do you want to view your assigned tickets (1), all closed or archived tickets (2), sort tickets by period (3) or logout (4)?\n",
-                    s -> s.equals("1") || s.equals("2") || s.equals("3") || s.equals("4"),
-                    "Please enter 1, 2, 3 or 4.");
-            if (choice.equals("4")) {
+                    "Please make a selection from the options below:\n"
+                            + "(1) View your assigned tickets\n"
+                            + "(2) View all closed or archived tickets\n"
+                            + "(3) Sort tickets by period\n"
+                            + "(4) View resolution times\n"
+                            + "(5) Export tickets or users\n"
+                            + "(6) Manage technicians\n"
+                            + "(7) Import staff accounts\n"
+                            + "(8) Logout\n",
+                    s -> isMenuOption(s, 8),
+                    "Please enter a number from 1 to 8.");
+            if (choice.equals("8")) {
                 // Signing out by returning from viewTechMenu()
                 return;
             }
             if (choice.equals("1")) {
-                // We only need to display a technician's own tickets here
-                if (currentUser.getOpenTickets().size() == 0) {
+                // We only need to display a technician's own tickets here, most
+                // urgent first, which the dashboard only finds again after they change
+                int openCount = session.getDashboard().getOpenCount();
+                List<Ticket> openTickets = session.getDashboard().getOpenTickets();
+                if (openTickets.size() == 0) {
                     System.out.println("\nYou don't have any open tickets currently assigned to you.\n");
                 } else {
-                    System.out.println("\nYour Assigned and Open Tickets: \n");
-                    System.out.printf("%-3d%-30s%-10s%-15s%-15s%n", 0,
-                            "Name",
-                            "Severity",
-                            "Status", "Description");
-
+                    System.out.println("\nYour Assigned and Open Tickets (most urgent " + openTickets.size()
+                            + " of " + openCount + "): \n");
+                    table.cell(0, 3).cell("Name", 30).cell("Severity", 10).cell("Status", 15)
+                            .cell("Description", 15).endRow();
                     int i = 1;
-                    for (Ticket t : currentUser.getOpenTickets()) {
-                        System.out.printf("%-3d%-30s%-10s%-15s%-15s%n", i,
-                                t.getAssignedTechnician().getFirstName() + " "
-                                        + t.getAssignedTechnician().getLastName(),
-                                t.getSeverity(),
-                                t.getTicketStatus(), t.getDescription());
+                    for (Ticket t : openTickets) {
+                        table.cell(i, 3).nameCell(t.getAssignedTechnician(), 30).cell(t.getSeverity().name(), 10)
+                                .cell(t.getTicketStatus().name(), 15).cell(t.getDescription(), 15).endRow();
                         i++;
                     }
-                    String prompt = "\nSelect a ticket (number) to view and/or edit, or type 'q' to go back.\n";
+                    table.flush();
+                    String prompt = "\nSelect a ticket (number) to view and/or edit, type 'b' to change the severity of several tickets at once, or type 'q' to go back.\n";
                     choice = getUserInput(prompt, s -> {
-                        if (s.toLowerCase().equals("q")) {
+                        if (s.toLowerCase().equals("q") || s.toLowerCase().equals("b")) {
                             return true;
                         }
                         try {
@@ -260,146 +508,276 @@ public class SentinelShield {
                             return false;
                         }
                     }, prompt);
-                    if (!choice.toLowerCase().equals("q")) {
+                    if (choice.toLowerCase().equals("b")) {
+                        bulkRetriageScreen(openTickets);
+                    } else if (!choice.toLowerCase().equals("q")) {
                         int ticketNo = Integer.parseInt(choice);
-                        if (ticketNo > currentUser.getOpenTickets().size() || ticketNo <= 0) {
+                        if (ticketNo > openTickets.size() || ticketNo <= 0) {
                             System.out.println("Please choose a valid ticket number.");
                         } else {
-                            techViewIndividualTicketScreen(currentUser.getOpenTickets().get(ticketNo - 1));
+                            techViewIndividualTicketScreen(openTickets.get(ticketNo - 1));
                         }
                     }
                 }
 
             } else if (choice.equals("2")) {
-                if (serviceDesk.returnAllClosedAndArchivedTickets().size() == 0) {
+                // Page through a single snapshot throughout, so the numbers shown
+                // still match if tickets change while the list is open
+                TicketCursor cursor = new TicketCursor(
+                        serviceDesk.query(TicketQuery.allTickets().withClosed()), LIST_PAGE_SIZE);
+                if (cursor.isEmpty()) {
                     System.out.println("\nThere are currently no Closed or Archived Tickets.\n");
                 } else {
-                    System.out.println("\nAll Closed and Archived Tickets: ");
-                    // Tickets are stored both in technicians, and in whatever the other ones are
-                    // called.
-                    // We could pick specifically just one of these lists, but instead, let's just
-                    // track
-                    // if a ticket's already printed, and if so, skip printing.
-
-                    // NVM That's terrible let's just get all tickets
-
-                    System.out.printf("%-3d%-30s%-10s%-23s%-15s%n", 0,
-                            "Name",
-                            "Severity",
-                            "Status", "Description");
-
-                    int i = 1;
-                    for (Ticket t : serviceDesk.returnAllClosedAndArchivedTickets()) {
-                        System.out.printf("%-3d%-30s%-10s%-23s%-15s%n", i,
-                                t.getAssignedTechnician().getFirstName() + " "
-                                        + t.getAssignedTechnician().getLastName(),
-                                t.getSeverity(),
-                                t.getTicketStatusString(), t.getDescription());
-                        i++;
-                    }
-                    System.out.println("");
-                    // Menu for archived tickets
-
-                    String prompt = "\nSelect a ticket (number) to view and/or edit, or type 'q' to go back.\n";
-                    choice = getUserInput(prompt, s -> {
-                        if (s.toLowerCase().equals("q")) {
-                            return true;
-                        }
-                        try {
-                            Integer.parseInt(s);
-                            return true;
-                        } catch (NumberFormatException _e) {
-                            return false;
-                        }
-                    }, prompt);
-                    if (!choice.toLowerCase().equals("q")) {
-                        int ticketNo = Integer.parseInt(choice);
-                        if (ticketNo > serviceDesk.returnAllClosedAndArchivedTickets().size() || ticketNo <= 0) {
-                            System.out.println("Please choose a valid ticket number.");
-                        }
-                        if (serviceDesk.returnAllClosedAndArchivedTickets().get(ticketNo - 1).getIsArchived()) {
-                            techViewArchivedTicketScreen(
-                                    serviceDesk.returnAllClosedAndArchivedTickets().get(ticketNo - 1));
-                            System.out.println("\nThis ticket is archived, and cannot be modified.\n");
-                        } else {
-                            techViewIndividualTicketScreen(
-                                    serviceDesk.returnAllClosedAndArchivedTickets().get(ticketNo - 1));
-                        }
-
-                    }
+                    closedAndArchivedTicketsScreen(cursor);
                 }
             } else if (choice.equals("3")) {
                 String prompt = "Please select beginning date of filter (dd/mm/yyyy): ";
                 String invalidPrompt = "Invalid date, please select beginning date of filter (dd/mm/yyyy): ";
                 // Check if start date is well formatted
                 getUserInput(prompt, s -> {
-                    SimpleDateFormat sdfrmt = new SimpleDateFormat("dd/MM/yyyy");
-                    sdfrmt.setLenient(false);
-                    try {
-                        startDate = sdfrmt.parse(s);
-                        return true;
-                    } catch (ParseException e) {
-                        return false;
-                    }
+                    startDate = Validators.parseDate(s);
+                    return startDate != null;
                 }, invalidPrompt);
                 prompt = "Please select end date of filter (dd/mm/yyyy): ";
                 invalidPrompt = "Invalid date, please select end date of filter (dd/mm/yyyy): ";
                 // Check if end date is well formatted
                 getUserInput(prompt, s -> {
-                    SimpleDateFormat sdfrmt = new SimpleDateFormat("dd/MM/yyyy");
-                    sdfrmt.setLenient(false);
-                    try {
-                        endDate = sdfrmt.parse(s);
-                        LocalDate sDate = startDate.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
-                        LocalDate eDate = endDate.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
-                        if (sDate.isBefore(eDate) || sDate.equals(eDate)) {
-                            return true;
-                        } else {
-                            return false;
-                        }
-                    } catch (ParseException e) {
-                        return false;
-                    }
+                    endDate = Validators.parseDate(s);
+                    return endDate != null && !endDate.isBefore(startDate);
                 }, invalidPrompt);
-                ArrayList<Ticket> ticketsSelected = new ArrayList<Ticket>();
-                int countOpen = 0, countResolved = 0, countUnresolved = 0;
-                for (Map.Entry<String, User> mapElement : users.entrySet()) {
-                    User value = mapElement.getValue();
-                    List<Ticket> userTickets = value.getTickets();
-                    if (value.getIsTechnician() == true) {
-                        for (Ticket userTicket : userTickets) {
-                            LocalDate sDate = startDate.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
-                            LocalDate eDate = endDate.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
-                            if ((userTicket.getDateCreated().isAfter(sDate)
-                                    && userTicket.getDateCreated().isBefore(eDate))
-                                    || userTicket.getDateCreated().isEqual(sDate)
-                                    || userTicket.getDateCreated().isEqual(eDate)) {
-                                ticketsSelected.add(userTicket);
-                                if (userTicket.getTicketStatus().name().equals("Open")) {
-                                    countOpen++;
-                                }
-                                if (userTicket.getTicketStatus().name().equals("CompletedResolved")) {
-                                    countResolved++;
-                                }
-                                if (userTicket.getTicketStatus().name().equals("CompletedUnresolved")) {
-                                    countUnresolved++;
-                                }
-                            }
-                        }
-                    }
-                }
+                LocalDate sDate = startDate;
+                LocalDate eDate = endDate;
+                // Pin a single snapshot for both the report and the ticket list
+                DeskSnapshot snapshot = serviceDesk.snapshot();
+                PeriodReport report = serviceDesk.generatePeriodReport(snapshot, sDate, eDate);
                 // Print results
-                System.out.println("\n\nTickets submitted: " + ticketsSelected.size());
-                System.out.println("Tickets open: " + countOpen);
-                System.out.println("Tickets resolved: " + countResolved);
-                System.out.println("Tickets unresolved: " + countUnresolved);
-                for (int i = 0; i < ticketsSelected.size(); i++) {
-                    printTicketDetails(ticketsSelected.get(i));
+                System.out.println("\n\nTickets submitted: " + report.getTicketsSubmitted());
+                System.out.println("Tickets open: " + report.getCount(Ticket.TicketStatus.Open));
+                System.out.println("Tickets resolved: " + report.getCount(Ticket.TicketStatus.CompletedResolved));
+                System.out.println("Tickets unresolved: " + report.getCount(Ticket.TicketStatus.CompletedUnresolved));
+                printPeriodReportBreakdown(report);
+                for (Ticket ticket : serviceDesk.query(snapshot,
+                        TicketQuery.allTickets().withCreatedBetween(sDate, eDate))) {
+                    printTicketDetails(ticket);
                 }
+                table.flush();
+            } else if (choice.equals("4")) {
+                printResolutionTimes();
+                printLoginTimes();
+            } else if (choice.equals("5")) {
+                exportScreen();
+            } else if (choice.equals("6")) {
+                manageTechniciansScreen();
+            } else if (choice.equals("7")) {
+                importAccountsScreen();
             }
         }
     }
 
+    // The manageTechniciansScreen() method lists the technicians
+    // in each tier, and lets the technician add, remove, or move a
+    // technician between tiers while the service desk keeps running.
+    private void manageTechniciansScreen() {
+        for (ServiceDesk.Tier tier : ServiceDesk.Tier.values()) {
+            System.out.println("\n" + tier.name() + " technicians:");
+            for (User technician : serviceDesk.getTechnicians(tier)) {
+                System.out.printf("%-30s%-30s%n", technician.getFirstName() + " " + technician.getLastName(),
+                        technician.getEmail());
+            }
+        }
+        String choice = getUserInput(
+                "\nWould you like to:\n(1) Add a technician\n(2) Remove a technician\n(3) Move a technician to another tier, or\n(4) Go back to the technician menu\n",
+                s -> isMenuOption(s, 4), "Please enter 1, 2, 3 or 4.");
+        if (choice.equals("4")) {
+            return;
+        }
+        String email = getUserInput("Please enter the technician's email: ", s -> !s.isEmpty(), "Enter an email.\nEmail: ");
+        User technician = users.get(email);
+        if (choice.equals("2")) {
+            if (technician != null && serviceDesk.removeTechnician(technician)) {
+                System.out.println("\n" + technician.getFirstName() + " has been removed, and their open tickets reassigned.\n");
+            } else {
+                System.out.println("\nThat technician can't be removed. They may not be working on the service desk, or be the last technician in their tier.\n");
+            }
+            return;
+        }
+        String tierChoice = getUserInput("Which tier?\n(1) Level 1, or\n(2) Level 2\n",
+                s -> isMenuOption(s, 2), "Please enter 1 or 2.");
+        ServiceDesk.Tier tier = tierChoice.equals("1") ? ServiceDesk.Tier.Level1 : ServiceDesk.Tier.Level2;
+        if (choice.equals("3")) {
+            if (technician != null && serviceDesk.moveTechnician(technician, tier)) {
+                System.out.println("\n" + technician.getFirstName() + " has been moved to " + tier.name() + ".\n");
+            } else {
+                System.out.println("\nThat technician can't be moved. They may not be working on the service desk, already be in that tier, or be the last technician in their tier.\n");
+            }
+            return;
+        }
+        if (technician == null) {
+            // There's no account yet, so create one for the new technician
+            String firstName = getUserInput("Please enter their First Name: ", s -> !s.isEmpty(), "Enter a name.\nFirst Name: ");
+            String lastName = getUserInput("Please enter their Last Name: ", s -> !s.isEmpty(), "Enter a name.\nLast Name: ");
+            String phone = getUserInput("Please enter their Phone number: ", Validators::isValidPhone,
+                    "Invalid phone number. Please enter a valid Australian phone number, listing only the digits, without any other characters.\nPhone number: ");
+            String password = getUserInput(
+                    "Please enter their Password, it must be at least 20 characters, and contain at least one uppercase letter, one lowercase letter, and one number:\n",
+                    Validators::isValidPassword,
+                    "Password must be at least 20 characters, and contain at least 1 uppercase, lowercase, and digit.");
+            String passwordHash = verifier.hash(password);
+            if (passwordHash == null) {
+                System.out.println("\nThe system is busy. Please try again shortly.\n");
+                return;
+            }
+            technician = new User(email, firstName, lastName, phone, passwordHash, true);
+            if (!users.add(technician)) {
+                System.out.println("\nAn account with that email was created in the meantime. Please try again.\n");
+                return;
+            }
+        }
+        if (serviceDesk.addTechnician(technician, tier)) {
+            System.out.println("\n" + technician.getFirstName() + " has been added to " + tier.name() + ".\n");
+        } else {
+            System.out.println("\nThat technician is already working on the service desk.\n");
+        }
+    }
+
+    // The exportScreen() method asks the technician what to
+    // export and where to, and then streams the tickets or users
+    // to that file.
+    private void exportScreen() {
+        String what = getUserInput("Would you like to export:\n(1) Tickets, or\n(2) Users\n",
+                s -> s.equals("1") || s.equals("2"), "Please enter 1 or 2.");
+        String formatChoice = getUserInput("Export as:\n(1) CSV, or\n(2) JSON (one ticket per line)\n",
+                s -> s.equals("1") || s.equals("2"), "Please enter 1 or 2.");
+        TicketExporter.Format format = formatChoice.equals("1") ? TicketExporter.Format.CSV
+                : TicketExporter.Format.JSON;
+        Path file = Paths.get(getUserInput("Please enter the file to export to: ",
+                s -> !s.isEmpty(), "Enter a file name.\nFile: "));
+        try {
+            long written;
+            if (what.equals("2")) {
+                written = exporter.exportUsers(file, format, users);
+            } else {
+                Predicate<String> isDateOrBlank = s -> s.isEmpty() || Validators.isValidDate(s);
+                String from = getUserInput("Created from (dd/mm/yyyy, or leave blank for any): ", isDateOrBlank,
+                        "Invalid date, please enter a date (dd/mm/yyyy) or leave blank: ");
+                String to = getUserInput("Created to (dd/mm/yyyy, or leave blank for any): ", isDateOrBlank,
+                        "Invalid date, please enter a date (dd/mm/yyyy) or leave blank: ");
+                String status = getUserInput(
+                        "Only export tickets which are:\n(1) Open\n(2) Completed (Resolved)\n(3) Completed (Unresolved), or\n(4) Any status\n",
+                        s -> s.equals("1") || s.equals("2") || s.equals("3") || s.equals("4"),
+                        "Please enter 1, 2, 3 or 4.");
+                String mine = getUserInput("Only export tickets assigned to you? (y/n) ",
+                        s -> s.equalsIgnoreCase("y") || s.equalsIgnoreCase("n"), "Please enter y or n.");
+                TicketQuery query = TicketQuery.allTickets().withCreatedBetween(
+                        from.isEmpty() ? null : Validators.parseDate(from),
+                        to.isEmpty() ? null : Validators.parseDate(to));
+                if (!status.equals("4")) {
+                    query = query.withStatus(Ticket.TicketStatus.values()[Integer.parseInt(status) - 1]);
+                }
+                if (mine.equalsIgnoreCase("y")) {
+                    query = query.withTechnician(currentUser);
+                }
+                written = exporter.exportTickets(file, format, query, serviceDesk);
+            }
+            System.out.println("\nExported " + written + " rows to " + file.toAbsolutePath() + "\n");
+        } catch (IOException e) {
+            System.out.println("\nThe export failed: " + e.getMessage() + "\n");
+        }
+    }
+
+    // The importAccountsScreen() method asks for a CSV file of
+    // staff accounts, imports them, and reports any lines which
+    // couldn't be imported.
+    private void importAccountsScreen() {
+        Path file = Paths.get(getUserInput(
+                "Please enter the CSV file to import (email, first name, last name, phone on each line): ",
+                s -> !s.isEmpty(), "Enter a file name.\nFile: "));
+        try {
+            long start = System.nanoTime();
+            AccountImporter.Result result = new AccountImporter(users).importFile(file);
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            System.out.println("\nImported " + result.getImported() + " accounts in " + millis + "ms, skipped "
+                    + result.getDuplicates() + " existing and " + result.getInvalid() + " invalid lines.");
+            for (String problem : result.getProblems()) {
+                System.out.println(problem);
+            }
+            if (result.getImported() > 0) {
+                System.out.println("Imported users must set a password with Forgot Password before logging in.");
+            }
+            System.out.println("");
+        } catch (IOException e) {
+            System.out.println("\nThe import failed: " + e.getMessage() + "\n");
+        }
+    }
+
+    // The printResolutionTimes() method prints the 50th, 90th
+    // and 99th percentile times to resolve a ticket, for each
+    // technician, tier and severity.
+    private void printResolutionTimes() {
+        ResolutionStats stats = serviceDesk.getResolutionStats();
+        String rowFormat = "%-30s%-10s%-12s%-12s%-12s%n";
+        System.out.println("\nTime to resolve:");
+        System.out.printf(rowFormat, "", "Resolved", "p50", "p90", "p99");
+        // Only the technicians on the service desk are listed, rather
+        // than searching every account for technicians
+        for (ServiceDesk.Tier tier : ServiceDesk.Tier.values()) {
+            for (User technician : serviceDesk.getTechnicians(tier)) {
+                printResolutionRow(rowFormat, technician.getFirstName() + " " + technician.getLastName(),
+                        stats.forTechnician(technician));
+            }
+        }
+        for (ServiceDesk.Tier tier : ServiceDesk.Tier.values()) {
+            printResolutionRow(rowFormat, tier.name(), stats.forTier(tier));
+        }
+        for (Ticket.Severity severity : Ticket.Severity.values()) {
+            printResolutionRow(rowFormat, severity.name(), stats.forSeverity(severity));
+        }
+        System.out.println("");
+    }
+
+    // The printLoginTimes() method prints how many logins there
+    // have been, and the 50th and 99th percentile times they took,
+    // along with the settings which affect those times.
+    private void printLoginTimes() {
+        ResolutionHistogram latency = verifier.getLatency();
+        System.out.println("Logins: " + verifier.getAccepted() + " accepted, " + verifier.getRejected()
+                + " rejected, " + verifier.getBusy() + " busy, " + verifier.getRehashed() + " passwords upgraded");
+        if (latency.getCount() > 0) {
+            System.out.printf("Login time: p50 %.1fms, p99 %.1fms (%d threads, %d iterations)%n%n",
+                    latency.getPercentile(0.50) / 1000.0, latency.getPercentile(0.99) / 1000.0,
+                    verifier.getThreads(), verifier.getIterations());
+        } else {
+            System.out.println("");
+        }
+    }
+
+    // The printResolutionRow() method prints the percentiles
+    // of a single time to resolve histogram.
+    private void printResolutionRow(String rowFormat, String label, ResolutionHistogram histogram) {
+        System.out.printf(rowFormat, label, histogram.getCount(),
+                formatDuration(histogram.getPercentile(0.50)),
+                formatDuration(histogram.getPercentile(0.90)),
+                formatDuration(histogram.getPercentile(0.99)));
+    }
+
+    // The formatDuration() method formats a number of seconds
+    // as days, hours and minutes, such as "1d 4h 12m".
+    private String formatDuration(long seconds) {
+        if (seconds < 0) {
+            return "N/A";
+        }
+        long days = seconds / 86400;
+        long hours = (seconds % 86400) / 3600;
+        long minutes = (seconds % 3600) / 60;
+        if (days > 0) {
+            return days + "d " + hours + "h " + minutes + "m";
+        }
+        if (hours > 0) {
+            return hours + "h " + minutes + "m";
+        }
+        return minutes + "m " + (seconds % 60) + "s";
+    }
+
     // The techViewIndividualTicketScreen() method prints
     // the data of a particular ticket to the screen,
     // thus preventing code repetition.
@@ -411,7 +789,7 @@ public class SentinelShield {
         System.out.printf("Description: %s%n%n", ticket.getDescription());
         int choice = Integer
                 .parseInt(getUserInput(
-                        "Would you like to:\n(1) Update the status of this ticket\n(2) Update the severity of the ticket, or\n(3) Go back to the technician menu\n",
+                        "Would you like to:\n(1) Update the status of this ticket\n(2) Update the severity of the ticket\n(3) View the history of the ticket, or\n(4) Go back to the technician menu\n",
                         s -> s.equals("1") || s.equals("2") || s.equals("3") || s.equals("4"),
                         "Please enter 1, 2, 3 or 4."));
         if (choice == 1) {
@@ -422,10 +800,54 @@ public class SentinelShield {
             updateTicketSeverityMenu(ticket);
         }
         if (choice == 3) {
+            printTicketHistory(ticket);
+        }
+        if (choice == 4) {
             return;
         }
     }
 
+    // The printTicketHistory() method prints how a ticket
+    // was when it was created, followed by every change
+    // made to it since, from the service desk's audit trail.
+    private void printTicketHistory(Ticket ticket) {
+        AuditTrail auditTrail = serviceDesk.getAuditTrail();
+        Ticket.State created = auditTrail.stateAt(ticket, ticket.getTimeCreated());
+        table.cell("Created:", 10).cell(ticket.getTimeCreated(), CHANGE_FORMAT, 0).endRow();
+        if (created != null) {
+            table.cell("Severity:", 10).text(historyValue(created.severity)).endRow();
+            table.cell("Status:", 10).text(historyValue(created.ticketStatus)).endRow();
+        }
+        List<AuditTrail.Change> changes = auditTrail.getChanges(ticket);
+        if (changes.isEmpty()) {
+            table.text("The ticket has not been changed since it was created.").endRow();
+        } else {
+            table.cell("Time", 21).cell("Field", 15).cell("From", 25).cell("To", 25).endRow();
+            for (AuditTrail.Change change : changes) {
+                table.cell(change.getTime(), CHANGE_FORMAT, 21).cell(change.getField().name(), 15)
+                        .cell(historyValue(change.getOldValue()), 25).cell(historyValue(change.getNewValue()), 25)
+                        .endRow();
+            }
+        }
+        table.flush();
+    }
+
+    // The historyValue() method returns how a value from
+    // the audit trail is shown in a ticket's history.
+    private String historyValue(Object value) {
+        if (value == null) {
+            return "None";
+        }
+        if (value instanceof User) {
+            User user = (User) value;
+            return user.getFirstName() + " " + user.getLastName();
+        }
+        if (value instanceof LocalDate) {
+            return ((LocalDate) value).format(TableRenderer.DAY_FORMAT);
+        }
+        return value.toString();
+    }
+
     // The techViewArchivedTicketScreen() method prints
     // the data of a particular archived ticket to the
     // screen thus preventing code repetition.
@@ -473,29 +895,57 @@ public class SentinelShield {
     private void updateTicketSeverityMenu(Ticket ticket) {
         // If the ticket isn't archived
         if (!ticket.getIsArchived()) {
-            int choice = Integer
-                    .parseInt(getUserInput(
-                            "Would you like to set the ticket severity to:\n(1) Low\n(2) Medium, or\n(3) High\n",
-                            s -> s.equals("1") || s.equals("2") || s.equals("3"), "Please enter 1, 2, or 3."));
-            switch (choice) {
-                case 1:
-                    ticket.setSeverity(Ticket.Severity.Low);
-                    break;
-                case 2:
-                    ticket.setSeverity(Ticket.Severity.Medium);
-                    break;
-                case 3:
-                    ticket.setSeverity(Ticket.Severity.High);
-                    break;
-            }
-            ticket.getAssignedTechnician().forgetTicket(ticket);
-            serviceDesk.AssignTicket(ticket, true);
-
+            serviceDesk.retriageTickets(List.of(ticket), chooseSeverity());
+            System.out.println("\nAssigning ticket to technician " + ticket.getAssignedTechnician().getFirstName() + "\n");
         } else {
             System.out.println("Sorry, this ticket has been archived, and cannot be edited.");
         }
     }
 
+    // The bulkRetriageScreen() method lets the technician pick
+    // several of the listed tickets by number, and change all
+    // their severities at once.
+    private void bulkRetriageScreen(List<Ticket> listedTickets) {
+        String prompt = "Please enter the numbers of the tickets to change, separated by commas (such as 1,3,4): ";
+        String invalidPrompt = "Please enter ticket numbers from the list, separated by commas: ";
+        String choice = getUserInput(prompt, s -> parseTicketNumbers(s, listedTickets.size()) != null, invalidPrompt);
+        List<Ticket> selected = new ArrayList<>();
+        for (int ticketNo : parseTicketNumbers(choice, listedTickets.size())) {
+            selected.add(listedTickets.get(ticketNo - 1));
+        }
+        int changed = serviceDesk.retriageTickets(selected, chooseSeverity());
+        System.out.println("\n" + changed + " tickets have been re-triaged and reassigned.\n");
+    }
+
+    // The parseTicketNumbers() method reads a comma separated list
+    // of ticket numbers, returning null if any of them are not a
+    // number from 1 up to the number of tickets listed.
+    private List<Integer> parseTicketNumbers(String input, int listed) {
+        List<Integer> numbers = new ArrayList<>();
+        for (String part : input.split(",")) {
+            try {
+                int ticketNo = Integer.parseInt(part.trim());
+                if (ticketNo <= 0 || ticketNo > listed) {
+                    return null;
+                }
+                numbers.add(ticketNo);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return numbers;
+    }
+
+    // The chooseSeverity() method asks the technician which
+    // severity a ticket should be set to.
+    private Ticket.Severity chooseSeverity() {
+        int choice = Integer
+                .parseInt(getUserInput(
+                        "Would you like to set the ticket severity to:\n(1) Low\n(2) Medium, or\n(3) High\n",
+                        s -> s.equals("1") || s.equals("2") || s.equals("3"), "Please enter 1, 2, or 3."));
+        return Ticket.Severity.values()[choice - 1];
+    }
+
     // The createTicketScreen() method, handles the user interface
     // and communication with the user, for the create ticket screen.
     private void createTicketScreen() {
@@ -512,8 +962,14 @@ public class SentinelShield {
             }
         } while (severity.compareTo("1") != 0 && severity.compareTo("2") != 0 && severity.compareTo("3") != 0);
         Ticket createdTicket = new Ticket(issue, severity, currentUser);
-        // Assign the ticket to the Service Desk, and therefore user
-        serviceDesk.AssignTicket(createdTicket, false);
+        // Hand the ticket to the Service Desk, which will assign it to a
+        // technician in the background
+        TicketIntake.Admission admission = department.submit(createdTicket);
+        if (admission == TicketIntake.Admission.Rejected) {
+            System.out.println("\nThe service desk is very busy right now, and your ticket could not be submitted. Please try again shortly.\n");
+        } else {
+            System.out.println("\nYour ticket has been received, and will be assigned to a technician shortly.\n");
+        }
     }
 
     // The viewTicketsScreen() method, handles the user interface
@@ -524,28 +980,21 @@ public class SentinelShield {
             // staff
             // We are a staff member:
         } else {
-            List<Ticket> tickets = currentUser.getOpenTickets();
+            // Oldest first, kept by the dashboard until they change
+            List<Ticket> tickets = session.getDashboard().getOpenTickets();
             if (tickets.size() == 0) {
                 System.out.println("\nYou don't have any open tickets at the moment.\n");
             } else {
                 System.out.println("\nYour Open Tickets:");
-                System.out.printf("%-30s%-10s%-23s%-18s%-15s%n",
-                        "Assigned to",
-                        "Severity",
-                        "Status",
-                        "Date Created",
-                        "Description");
-
+                table.cell("Assigned to", 30).cell("Severity", 10).cell("Status", 23).cell("Date Created", 18)
+                        .cell("Description", 15).endRow();
                 for (Ticket t : tickets) {
-                    System.out.printf("%-30s%-10s%-23s%-18s%-15s%n",
-                            t.getAssignedTechnician().getFirstName() + " "
-                                    + t.getAssignedTechnician().getLastName(),
-                            t.getSeverity(),
-                            t.getTicketStatusString(),
-                            t.getDateCreatedString(),
-                            t.getDescription());
+                    table.nameCell(t.getAssignedTechnician(), 30).cell(t.getSeverity().name(), 10)
+                            .cell(t.getTicketStatusString(), 23)
+                            .cell(t.getDateCreated(), Ticket.DATE_CREATED_FORMAT, 18)
+                            .cell(t.getDescription(), 15).endRow();
                 }
-                System.out.println("");
+                table.endRow().flush();
 
             }
         }
@@ -555,6 +1004,7 @@ public class SentinelShield {
     public void run() {
         boolean conloop = true;
         while (conloop) {
+            chooseDepartment();
             // Refresh ticket status every time the menu is returned to
             serviceDesk.automaticallyRefreshTickets();
             String input = "";
@@ -586,31 +1036,79 @@ public class SentinelShield {
     }
 
     public static void main(String[] args) {
+        // Check passwords on their own threads, so a burst of logins can't hold up
+        // the tickets
+        int loginThreads = Integer.getInteger("sentinelshield.login.threads",
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+        int iterations = Integer.getInteger("sentinelshield.pbkdf2.iterations", PasswordHasher.DEFAULT_ITERATIONS);
+        PasswordHasher hasher = new PasswordHasher(iterations);
+        CredentialVerifier verifier = new CredentialVerifier(hasher, loginThreads, LOGIN_QUEUE_SIZE,
+                Duration.ofSeconds(5));
+
         // Create the technician for this system.
         User[] techniciansLevel1, techniciansLevel2;
         techniciansLevel1 = new User[3];
         techniciansLevel2 = new User[3];
-        techniciansLevel1[0] = new User("harrystyles@gmail.com", "Harry", "Styles", "(02) 1234 5678", "harryharry",
-                true);
-        techniciansLevel1[1] = new User("niallhorran@gmail.com", "Niall", "Horan", "(02) 5678 1234", "nialnial", true);
-        techniciansLevel1[2] = new User("liampayne@gmail.com", "Liam", "Payne", "(02) 1234 5666", "liamliam", true);
-        techniciansLevel2[0] = new User("louistomlison@gmail.com", "Louis", "Tomlison", "(02) 1234 1234", "louislouis",
-                true);
-        techniciansLevel2[1] = new User("zaynmalik@gmail.com", "Zayn", "Malik", "(02) 5678 5678", "zaynzayn", true);
-        techniciansLevel2[2] = new User("st", "SkyTech", "SkyTech", "0", "st", true);
-
-        // Add the technicians to the user map
-        Map<String, User> users = new HashMap<>();
-        for (User technician : techniciansLevel1) {
-            users.put(technician.getEmail(), technician);
-        }
-        for (User technician : techniciansLevel2) {
-            users.put(technician.getEmail(), technician);
-        }
-
-        // Initialize SentinelShield
-        SentinelShield system = new SentinelShield(users, new ServiceDesk(techniciansLevel1, techniciansLevel2));
-        // Run the program
-        system.run();
+        techniciansLevel1[0] = new User("harrystyles@gmail.com", "Harry", "Styles", "(02) 1234 5678",
+                hasher.hash("harryharry"), true);
+        techniciansLevel1[1] = new User("niallhorran@gmail.com", "Niall", "Horan", "(02) 5678 1234",
+                hasher.hash("nialnial"), true);
+        techniciansLevel1[2] = new User("liampayne@gmail.com", "Liam", "Payne", "(02) 1234 5666",
+                hasher.hash("liamliam"), true);
+        techniciansLevel2[0] = new User("louistomlison@gmail.com", "Louis", "Tomlison", "(02) 1234 1234",
+                hasher.hash("louislouis"), true);
+        techniciansLevel2[1] = new User("zaynmalik@gmail.com", "Zayn", "Malik", "(02) 5678 5678",
+                hasher.hash("zaynzayn"), true);
+        techniciansLevel2[2] = new User("st", "SkyTech", "SkyTech", "0", hasher.hash("st"), true);
+
+        // The Partitioned mode gives each tier its own thread for making changes
+        ServiceDesk.Mode mode = ServiceDesk.Mode.Locked;
+        for (ServiceDesk.Mode candidate : ServiceDesk.Mode.values()) {
+            if (candidate.name().equalsIgnoreCase(System.getProperty("sentinelshield.desk.mode", ""))) {
+                mode = candidate;
+            }
+        }
+
+        // Every department shares the same background threads: a few scheduler
+        // threads for rebalancing, archiving and notifications, so one large
+        // department's work doesn't hold up the rest, one pool for assigning
+        // new tickets, one file for notifications, and one event log
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(
+                Integer.getInteger("sentinelshield.scheduler.threads", 2),
+                new DaemonThreadFactory("sentinel-scheduler"));
+        ExecutorService intakePool = Executors.newFixedThreadPool(
+                Integer.getInteger("sentinelshield.intake.threads", 2), new DaemonThreadFactory("sentinel-intake"));
+        Path notificationFile = Paths.get(System.getProperty("sentinelshield.notifications.file", "notifications.log"));
+        // Events are dropped, rather than holding up tickets, if the log falls behind
+        EventLog.Policy eventPolicy = EventLog.Policy.Drop;
+        for (EventLog.Policy candidate : EventLog.Policy.values()) {
+            if (candidate.name().equalsIgnoreCase(System.getProperty("sentinelshield.eventlog.policy", ""))) {
+                eventPolicy = candidate;
+            }
+        }
+        EventLog eventLog = new EventLog(Paths.get(System.getProperty("sentinelshield.eventlog.file", "events.log")),
+                EVENT_LOG_CAPACITY, eventPolicy, EVENT_LOG_FILE_BYTES, EVENT_LOG_FILES);
+        eventLog.start();
+        // Sessions end once left unused, and are cleared out in the background
+        SessionStore sessions = new SessionStore(
+                Duration.ofMinutes(Integer.getInteger("sentinelshield.session.idle.minutes", 30)));
+        scheduler.scheduleWithFixedDelay(sessions::expireSessions, 1, 1, TimeUnit.MINUTES);
+        DepartmentHost host = new DepartmentHost(scheduler, intakePool,
+                new FileNotificationTransport(notificationFile, "servicedesk@sentinelshield"), eventLog, sessions,
+                mode);
+        host.addDepartment("IT", techniciansLevel1, techniciansLevel2, Ticket.Severity.High,
+                Department.Quota.defaults());
+        SentinelShield system = new SentinelShield(host, verifier);
+
+        // Run the program, and then let the background work finish
+        try {
+            system.run();
+        } finally {
+            host.shutdown();
+            scheduler.shutdown();
+            intakePool.shutdown();
+            verifier.shutdown();
+            eventLog.close();
+        }
     }
 }
@@ -3,87 +3,871 @@
 // as its criteria both severity, and number of tickets assigned
 // to each technician
 
-import java.util.Random;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.PriorityQueue;
 import java.util.List;
+import java.util.Map;
 import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 
-public class ServiceDesk {
-    private User[] techniciansLevel1, techniciansLevel2;
+public class ServiceDesk implements TicketListener {
+    // The Tier enum is used to tell which
+    // pool of technicians a technician belongs
+    // to, either Level 1 or Level 2
+    enum Tier {
+        Level1,
+        Level2
+    }
+
+    // The Mode enum is used to choose how changes are
+    // made to the service desk, either Locked, one change
+    // at a time across the whole desk, or Partitioned,
+    // where each tier is changed by its own TierLoop
+    enum Mode {
+        Locked,
+        Partitioned
+    }
+
+    // The most commands waiting for a tier's loop at once.
+    private static final int LOOP_CAPACITY = 4096;
+
+    // How snapshot() waits for a change to finish: spinning, then
+    // yielding, then parking from a microsecond up to about a
+    // millisecond at a time.
+    private static final int SPIN_ATTEMPTS = 64;
+    private static final int YIELD_ATTEMPTS = 16;
+    private static final long MIN_PARK_NANOS = 1000;
+    private static final int MAX_BACKOFF_SHIFT = 10;
+
+    // The technicians in each tier. This is replaced, rather than
+    // changed, whenever a technician is added, removed or moved.
+    private volatile TechnicianRoster roster;
+
+    // The lowest severity of ticket handled by level 2
+    // technicians, so departments can route differently.
+    private volatile Ticket.Severity escalationSeverity = Ticket.Severity.High;
+
+    // Everything which needs to hear about ticket changes
+    // made through this service desk.
+    private final List<TicketListener> listeners = new CopyOnWriteArrayList<>();
+    private final ResolutionStats resolutionStats;
+    private final AuditTrail auditTrail = new AuditTrail();
+
+    // Changes which move tickets between users, or change the
+    // roster, are made one at a time while holding the writeLock,
+    // apart from those the Partitioned mode leaves to the loops.
+    // The version is odd while a change is being made, and even
+    // otherwise, so snapshot() can tell whether it saw a change
+    // part way through and try again, without ever having to
+    // take the lock itself.
+    private final Object writeLock = new Object();
+    private final AtomicLong version = new AtomicLong();
+
+    // In the Partitioned mode, each tier has a loop which makes
+    // every change to its technicians' tickets, and the tier as
+    // last published by that loop, which snapshot() reads from.
+    // Both are indexed by Tier ordinal, and are null otherwise.
+    private final Mode mode;
+    private final TierLoop[] loops;
+    private final AtomicReferenceArray<TierView> views;
+
+    // A retriage in the Partitioned mode hands tickets from one
+    // tier's loop to another's without holding the writeLock. A
+    // handoff is started once the tickets have been taken away
+    // from their old tier, and finished once the new tier has
+    // published them, so snapshot() waits while the two counts
+    // differ. The tickets in between are kept in inTransit.
+    private final AtomicLong handoffsStarted = new AtomicLong();
+    private final AtomicLong handoffsFinished = new AtomicLong();
+    private final Set<Ticket> inTransit = ConcurrentHashMap.newKeySet();
+
+    // The TierView class is a tier's technicians and
+    // their tickets, as published by the tier's loop.
+    private static final class TierView {
+        private final long version;
+        private final User[] technicians;
+        private final TicketList.Snapshot[] tickets;
+
+        private TierView(long version, User[] technicians, TicketList.Snapshot[] tickets) {
+            this.version = version;
+            this.technicians = technicians;
+            this.tickets = tickets;
+        }
+    }
 
     // The ServiceDesk() method is the constructor for the
-    // ServiceDesk class.
+    // ServiceDesk class, using the Locked mode.
     public ServiceDesk(User[] techniciansLevel1, User[] techniciansLevel2) {
-        this.techniciansLevel1 = techniciansLevel1;
-        this.techniciansLevel2 = techniciansLevel2;
+        this(techniciansLevel1, techniciansLevel2, Mode.Locked);
     }
 
-    // The AssignTicket() method, assigns a ticket to the
-    // appropriate technician, based on its severity, and
-    // the number of tickets already assigned to each
-    // technician.
-    public void AssignTicket(Ticket toAssign, boolean reassign) {
-        if (!reassign) {
-            toAssign.getCreatedBy().assignTicket(toAssign);
-        }
-
-        // First, get the severity
-        boolean isHighSeverity = (toAssign.getSeverity() == Ticket.Severity.High);
-
-        // If the severity is high, assign to a level 2 technician.
-        // Otherwise, assign to a level 1 technician
-        User[] targetServiceDesk = isHighSeverity ? techniciansLevel2 : techniciansLevel1;
-
-        // Now chose a specific user to assign to
-        User targetUser = PickUserForTicket(targetServiceDesk);
-        toAssign.AssignTicket(targetUser);
-        System.out.println("\nAssigning ticket to technician " + targetUser.getFirstName() + "\n");
-    }
-
-    // The PickUserForTicket method handles the assignment of a ticket
-    // to a technician. It assigns the ticket to the technician with
-    // the least number of tickets currently assigned to them, and if
-    // multiple technicians have the same number of tickets
-    // it assigns the ticket randomly between the technicians with 
-    // equal number of tickets. This is done so as to ensure that technicians
-    // are not being overloaded.
-    private User PickUserForTicket(User[] technicianList) {
-        // The technician with the least number of tickets currently assigned
-        // Initializing with first technician
-        User topTechnician = technicianList[0];
-        int minTicketCount = topTechnician.getTickets().size();
-
-        boolean allTechniciansHaveSameMinimumTicketCount = true;
-
-        for (User technician : technicianList) {
-            int ticketCount = technician.getTickets().size();
-
-            // Lets think this through properly
-            if (ticketCount < minTicketCount) {
-                topTechnician = technician;
-                minTicketCount = ticketCount;
-                allTechniciansHaveSameMinimumTicketCount = false;
-            } else if (ticketCount > minTicketCount) {
-                // Also false, as not all techs have same min count
-                allTechniciansHaveSameMinimumTicketCount = false;
-            }            
-        }
-        // We have now walked through all the users.
-        // If they all have the same ticket count, pick one at random:
-
-        // It has been required that if every technician has an identical
-        // number of tickets assigned, one of them be chosen at random.
-        // This only occurs if they all have the same count, as if n technicians
-        // are tied, then one of those n should be chosen.
-        // Shuffling in this case could result in another technician being overloaded
-        // with even more tickets unnecessarily.
-        // This will aide with that process.
-        if (allTechniciansHaveSameMinimumTicketCount) {
-            Random generator = new Random();
-            int index = generator.nextInt(technicianList.length);
-            topTechnician = technicianList[index];
-        }
-        return topTechnician;
+    // This version of ServiceDesk() lets the mode be chosen. In the
+    // Partitioned mode a thread is started for each tier, which
+    // shutdown() stops.
+    public ServiceDesk(User[] techniciansLevel1, User[] techniciansLevel2, Mode mode) {
+        this.roster = TechnicianRoster.of(techniciansLevel1, techniciansLevel2);
+        this.resolutionStats = new ResolutionStats(this);
+        this.mode = mode;
+        addTicketListener(resolutionStats);
+        addTicketListener(auditTrail);
+        if (mode == Mode.Partitioned) {
+            this.views = new AtomicReferenceArray<>(Tier.values().length);
+            this.loops = new TierLoop[Tier.values().length];
+            for (Tier tier : Tier.values()) {
+                publish(tier);
+                loops[tier.ordinal()] = new TierLoop("sentinel-" + tier.name().toLowerCase(Locale.ROOT),
+                        LOOP_CAPACITY, () -> publish(tier));
+            }
+        } else {
+            this.views = null;
+            this.loops = null;
+        }
+    }
+
+    // The getMode() method is a getter method, for
+    // how changes are made to the service desk.
+    public Mode getMode() {
+        return this.mode;
+    }
+
+    // The shutdown() method stops the tiers' loops, in the
+    // Partitioned mode, once they have applied every change
+    // already sent to them.
+    public void shutdown() {
+        if (loops != null) {
+            for (TierLoop loop : loops) {
+                loop.stop();
+            }
+        }
+    }
+
+    // The addTicketListener() method registers a listener to be
+    // told about changes to every ticket on this service desk.
+    public void addTicketListener(TicketListener listener) {
+        listeners.add(listener);
+    }
+
+    // The ticketStatusChanged() method moves a ticket into or out
+    // of its technician's queue, and passes the change on to
+    // every registered listener.
+    @Override
+    public void ticketStatusChanged(Ticket ticket, Ticket.TicketStatus oldStatus, Ticket.TicketStatus newStatus) {
+        requeue(ticket, true);
+        for (TicketListener listener : listeners) {
+            listener.ticketStatusChanged(ticket, oldStatus, newStatus);
+        }
+    }
+
+    // The ticketSeverityChanged() method moves a ticket to its new
+    // place in its technician's queue, and passes the change on to
+    // every registered listener.
+    @Override
+    public void ticketSeverityChanged(Ticket ticket, Ticket.Severity oldSeverity, Ticket.Severity newSeverity) {
+        requeue(ticket, false);
+        for (TicketListener listener : listeners) {
+            listener.ticketSeverityChanged(ticket, oldSeverity, newSeverity);
+        }
+    }
+
+    // The requeue() method brings a ticket's place in its
+    // technician's queue up to date after its status or severity
+    // has changed. In the Partitioned mode, this is sent to the
+    // loop of the technician's tier, rather than changing the
+    // queue from whichever thread made the change.
+    private void requeue(Ticket ticket, boolean statusChanged) {
+        User technician = ticket.getAssignedTechnician();
+        if (technician == null) {
+            return;
+        }
+        Tier tier = loops == null ? null : roster.tierOf(technician);
+        if (tier == null) {
+            if (!inTransit.contains(ticket)) {
+                requeue(ticket, technician, statusChanged);
+            }
+        } else {
+            loops[tier.ordinal()].execute(() -> requeueOnLoop(ticket, tier, statusChanged));
+        }
+    }
+
+    // The requeueOnLoop() method does the work of requeue() on a
+    // tier's loop. By the time it runs, the ticket may have been
+    // moved on, in which case whoever moved it puts it in the
+    // right queue, so it is left alone.
+    private void requeueOnLoop(Ticket ticket, Tier tier, boolean statusChanged) {
+        User technician = ticket.getAssignedTechnician();
+        if (technician != null && roster.tierOf(technician) == tier && !inTransit.contains(ticket)) {
+            requeue(ticket, technician, statusChanged);
+        }
+    }
+
+    // Only open tickets are kept in a technician's queue. A change
+    // of severity only moves a ticket which is already in it.
+    private static void requeue(Ticket ticket, User technician, boolean statusChanged) {
+        TicketQueue queue = technician.getOpenQueue();
+        if (!statusChanged) {
+            queue.update(ticket);
+        } else if (ticket.getIsOpen() && !ticket.getIsArchived()) {
+            queue.add(ticket);
+        } else {
+            queue.remove(ticket);
+        }
+    }
+
+    // The ticketAssigned() method passes a ticket's assignment on
+    // to every registered listener. ServiceDesk calls this itself,
+    // after giving a ticket to a technician.
+    @Override
+    public void ticketAssigned(Ticket ticket, User oldTechnician, User newTechnician) {
+        for (TicketListener listener : listeners) {
+            listener.ticketAssigned(ticket, oldTechnician, newTechnician);
+        }
+    }
+
+    // The ticketStateChanged() method passes every change to a
+    // ticket's state on to every registered listener.
+    @Override
+    public void ticketStateChanged(Ticket ticket, Ticket.State oldState, Ticket.State newState) {
+        for (TicketListener listener : listeners) {
+            listener.ticketStateChanged(ticket, oldState, newState);
+        }
+    }
+
+    // The getResolutionStats() method is a getter method,
+    // for the time to resolve histograms of this service desk.
+    public ResolutionStats getResolutionStats() {
+        return this.resolutionStats;
+    }
+
+    // The getAuditTrail() method is a getter method,
+    // for the history of changes to this service desk's tickets.
+    public AuditTrail getAuditTrail() {
+        return this.auditTrail;
+    }
+
+    // The tierOf() method returns which tier a technician
+    // belongs to, or null if they are not on this service desk.
+    public Tier tierOf(User technician) {
+        return roster.tierOf(technician);
+    }
+
+    // The tierFor() method returns the tier a ticket should be
+    // handled by. Tickets at least as severe as the escalation
+    // severity go to a level 2 technician, and everything else
+    // to a level 1 technician.
+    Tier tierFor(Ticket ticket) {
+        Ticket.Severity severity = ticket.getSeverity();
+        return severity != null && severity.compareTo(escalationSeverity) >= 0 ? Tier.Level2 : Tier.Level1;
+    }
+
+    // The getEscalationSeverity() method is a getter method, for the
+    // lowest severity of ticket handled by level 2 technicians.
+    public Ticket.Severity getEscalationSeverity() {
+        return this.escalationSeverity;
+    }
+
+    // The setEscalationSeverity() method is a setter method, for the
+    // lowest severity of ticket handled by level 2 technicians. It
+    // only affects tickets assigned afterwards.
+    public void setEscalationSeverity(Ticket.Severity escalationSeverity) {
+        this.escalationSeverity = escalationSeverity;
+    }
+
+    // The countOpenTickets() method returns the number of open
+    // tickets held by the technicians of this service desk.
+    public long countOpenTickets() {
+        TechnicianRoster current = roster;
+        long count = 0;
+        for (Tier tier : Tier.values()) {
+            for (User technician : current.getMembers(tier)) {
+                count += technician.getOpenQueue().size();
+            }
+        }
+        return count;
+    }
+
+    // The getTechnicians() method returns the technicians in
+    // a tier who are currently being given new tickets.
+    public User[] getTechnicians(Tier tier) {
+        return roster.getActive(tier).clone();
+    }
+
+    // The addTechnician() method adds a technician to a tier,
+    // so they start being given new tickets straight away. It
+    // returns false if they are already working in a tier, in
+    // which case moveTechnician() should be used instead.
+    public boolean addTechnician(User technician, Tier tier) {
+        synchronized (writeLock) {
+            if (roster.isActive(technician)) {
+                return false;
+            }
+            pauseTiers();
+            version.incrementAndGet();
+            try {
+                technician.setIsTechnician(true);
+                roster = roster.withActive(technician, tier);
+            } finally {
+                resumeTiers();
+                version.incrementAndGet();
+            }
+        }
+        return true;
+    }
+
+    // The removeTechnician() method stops a technician from being
+    // given tickets, and shares their open tickets out between the
+    // remaining technicians in a single pass. Their closed tickets
+    // stay with them, so they still show up in reports. It returns
+    // false if they are not working in a tier, or are the last
+    // technician in their tier.
+    public boolean removeTechnician(User technician) {
+        synchronized (writeLock) {
+            Tier tier = roster.tierOf(technician);
+            if (tier == null || !roster.isActive(technician) || roster.getActive(tier).length == 1) {
+                return false;
+            }
+            pauseTiers();
+            version.incrementAndGet();
+            try {
+                List<Ticket> openTickets = takeOpenTickets(technician, t -> true);
+                technician.setIsTechnician(false);
+                roster = roster.withInactive(technician);
+                distribute(openTickets);
+            } finally {
+                resumeTiers();
+                version.incrementAndGet();
+            }
+        }
+        return true;
+    }
+
+    // The moveTechnician() method moves a technician to another
+    // tier. Any open tickets they hold which belong to their old
+    // tier are shared out between the technicians of that tier.
+    // It returns false if they are not working in a tier, are
+    // already in the tier, or are the last technician in their tier.
+    public boolean moveTechnician(User technician, Tier tier) {
+        synchronized (writeLock) {
+            Tier oldTier = roster.tierOf(technician);
+            if (oldTier == null || oldTier == tier || !roster.isActive(technician)
+                    || roster.getActive(oldTier).length == 1) {
+                return false;
+            }
+            pauseTiers();
+            version.incrementAndGet();
+            try {
+                roster = roster.withActive(technician, tier);
+                distribute(takeOpenTickets(technician, t -> tierFor(t) != tier));
+            } finally {
+                resumeTiers();
+                version.incrementAndGet();
+            }
+        }
+        return true;
+    }
+
+    // The transferTickets() method moves a batch of tickets from one
+    // technician to another in one change. Any ticket which has been
+    // started, closed or reassigned since it was picked is left where
+    // it is. It returns the number of tickets moved.
+    public int transferTickets(List<Ticket> tickets, User from, User to) {
+        if (loops != null) {
+            // Within a tier, the move is made by the tier's loop
+            Tier tier = roster.tierOf(to);
+            if (tier != null && tier == roster.tierOf(from)) {
+                return loops[tier.ordinal()].call(() -> transfer(tickets, from, to)).join();
+            }
+        }
+        synchronized (writeLock) {
+            if (!roster.isActive(to)) {
+                return 0;
+            }
+            pauseTiers();
+            version.incrementAndGet();
+            try {
+                return transfer(tickets, from, to);
+            } finally {
+                resumeTiers();
+                version.incrementAndGet();
+            }
+        }
+    }
+
+    // The transfer() method does the work of transferTickets(), and
+    // must only be called while holding the writeLock, or from the
+    // loop of the technicians' tier.
+    private int transfer(List<Ticket> tickets, User from, User to) {
+        if (!roster.isActive(to)) {
+            return 0;
+        }
+        Set<Ticket> requested = Collections.newSetFromMap(new IdentityHashMap<>());
+        requested.addAll(tickets);
+        List<Ticket> moved = takeOpenTickets(from,
+                t -> requested.contains(t) && !t.getIsStarted() && t.getAssignedTechnician() == from);
+        Instant now = Instant.now();
+        for (Ticket ticket : moved) {
+            ticket.setAssignedTechnician(to);
+            ticket.setTimeLastMoved(now);
+            to.getOpenQueue().add(ticket);
+        }
+        to.getTicketList().addAll(moved);
+        for (Ticket ticket : moved) {
+            ticketAssigned(ticket, from, to);
+        }
+        return moved.size();
+    }
+
+    // The takeOpenTickets() method removes a technician's open
+    // tickets which match the filter from their list, in a single
+    // pass, and returns them. It must only be called while
+    // holding the writeLock, or from the technician's tier's loop.
+    private List<Ticket> takeOpenTickets(User technician, Predicate<Ticket> filter) {
+        List<Ticket> taken = new ArrayList<>();
+        for (Ticket ticket : technician.getTickets()) {
+            if (ticket.getIsOpen() && !ticket.getIsArchived() && filter.test(ticket)) {
+                taken.add(ticket);
+            }
+        }
+        Set<Ticket> takenSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        takenSet.addAll(taken);
+        technician.getTicketList().removeIf(takenSet::contains);
+        for (Ticket ticket : taken) {
+            technician.getOpenQueue().remove(ticket);
+        }
+        return taken;
+    }
+
+    // The distribute() method assigns a batch of tickets which have
+    // no technician, in one pass. Each ticket goes to the technician
+    // in its tier with the fewest tickets, counting the tickets
+    // already handed out in this batch, picking at random between
+    // technicians with the same number, and then every technician's
+    // share is added to their list at once. It must only be called
+    // while holding the writeLock.
+    private void distribute(List<Ticket> tickets) {
+        List<List<Ticket>> byTier = splitByTier(tickets);
+        for (Tier tier : Tier.values()) {
+            distribute(byTier.get(tier.ordinal()), tier);
+        }
+    }
+
+    // The splitByTier() method splits a batch of tickets into
+    // the tickets for each tier, indexed by Tier ordinal.
+    private List<List<Ticket>> splitByTier(List<Ticket> tickets) {
+        List<List<Ticket>> byTier = new ArrayList<>(Tier.values().length);
+        for (int i = 0; i < Tier.values().length; i++) {
+            byTier.add(new ArrayList<>());
+        }
+        for (Ticket ticket : tickets) {
+            byTier.get(tierFor(ticket).ordinal()).add(ticket);
+        }
+        return byTier;
+    }
+
+    // This version of distribute() shares out tickets between the
+    // technicians of a single tier. It must only be called while
+    // holding the writeLock, or from the tier's loop.
+    private void distribute(List<Ticket> tickets, Tier tier) {
+        if (tickets.isEmpty()) {
+            return;
+        }
+        User[] technicians = roster.getActive(tier);
+        int[] loads = new int[technicians.length];
+        // Technicians with the same number of tickets are picked
+        // between at random, in an order shuffled for each batch
+        int[] ranks = new int[technicians.length];
+        List<List<Ticket>> shares = new ArrayList<>(technicians.length);
+        for (int i = 0; i < technicians.length; i++) {
+            loads[i] = technicians[i].getTicketList().size();
+            int j = ThreadLocalRandom.current().nextInt(i + 1);
+            ranks[i] = ranks[j];
+            ranks[j] = i;
+            shares.add(new ArrayList<>());
+        }
+        PriorityQueue<Integer> leastLoaded = new PriorityQueue<>(Math.max(1, technicians.length),
+                Comparator.<Integer>comparingInt(i -> loads[i]).thenComparingInt(i -> ranks[i]));
+        for (int i = 0; i < technicians.length; i++) {
+            leastLoaded.add(i);
+        }
+        for (Ticket ticket : tickets) {
+            int index = leastLoaded.poll();
+            shares.get(index).add(ticket);
+            loads[index]++;
+            leastLoaded.add(index);
+        }
+        for (int i = 0; i < technicians.length; i++) {
+            List<Ticket> share = shares.get(i);
+            User[] previous = new User[share.size()];
+            for (int j = 0; j < share.size(); j++) {
+                Ticket ticket = share.get(j);
+                previous[j] = ticket.getAssignedTechnician();
+                ticket.setListener(this);
+                ticket.setAssignedTechnician(technicians[i]);
+                if (ticket.getIsOpen() && !ticket.getIsArchived()) {
+                    technicians[i].getOpenQueue().add(ticket);
+                }
+            }
+            technicians[i].getTicketList().addAll(share);
+            for (int j = 0; j < share.size(); j++) {
+                ticketAssigned(share.get(j), previous[j], technicians[i]);
+            }
+        }
+    }
+
+    // The distributeOnLoops() method sends each tier's share of a
+    // batch of tickets to the tier's loop to be assigned, in the
+    // Partitioned mode, and returns a future for each tier, which
+    // completes once its share has been assigned and published.
+    // Newly submitted tickets are then added to their creators'
+    // lists, in the same command, and retriaged tickets settled.
+    private CompletableFuture<?>[] distributeOnLoops(List<Ticket> tickets, boolean submitted) {
+        List<List<Ticket>> byTier = splitByTier(tickets);
+        CompletableFuture<?>[] assigned = new CompletableFuture<?>[Tier.values().length];
+        for (Tier tier : Tier.values()) {
+            List<Ticket> share = byTier.get(tier.ordinal());
+            assigned[tier.ordinal()] = share.isEmpty() ? CompletableFuture.completedFuture(null)
+                    : loops[tier.ordinal()].call(() -> {
+                        distribute(share, tier);
+                        if (submitted) {
+                            addToCreators(share);
+                        } else {
+                            settle(share);
+                        }
+                        publish(tier);
+                        return null;
+                    });
+        }
+        return assigned;
+    }
+
+    // The settle() method lets retriaged tickets be requeued again
+    // once they have been shared out, and puts right the queues of
+    // any whose status was changed while they were being moved.
+    private void settle(List<Ticket> tickets) {
+        inTransit.removeAll(tickets);
+        for (Ticket ticket : tickets) {
+            requeue(ticket, ticket.getAssignedTechnician(), true);
+        }
+    }
+
+    // The addToCreators() method adds newly submitted tickets to
+    // the submitted lists of the users who submitted them. It is
+    // only done once they have been assigned, so a user's list
+    // never shows a ticket without a technician.
+    private static void addToCreators(List<Ticket> tickets) {
+        for (Ticket ticket : tickets) {
+            ticket.getCreatedBy().submitTicket(ticket);
+        }
+    }
+
+    // The pauseTiers() method holds every tier's loop, in the
+    // Partitioned mode, so a change which spans the tiers can be
+    // made while none of them are running. It must only be called
+    // while holding the writeLock.
+    private void pauseTiers() {
+        if (loops != null) {
+            for (TierLoop loop : loops) {
+                loop.pause();
+            }
+        }
+    }
+
+    // The resumeTiers() method publishes every tier as the change
+    // left it, and lets the loops carry on.
+    private void resumeTiers() {
+        if (loops != null) {
+            for (Tier tier : Tier.values()) {
+                publish(tier);
+            }
+            for (TierLoop loop : loops) {
+                loop.resume();
+            }
+        }
+    }
+
+    // The publish() method makes the current state of a tier
+    // visible to snapshot(), in the Partitioned mode. It is run
+    // by the tier's loop after every batch of changes, and by a
+    // command which has to be visible before its future completes.
+    // Otherwise it is only run while the tiers are paused.
+    private void publish(Tier tier) {
+        TierView before = views.get(tier.ordinal());
+        User[] technicians = roster.getMembers(tier);
+        views.set(tier.ordinal(), new TierView(before == null ? 0 : before.version + 1, technicians,
+                captureTickets(technicians)));
+    }
+
+    // The assignTickets() method assigns a batch of newly created
+    // tickets in one change, sharing them out between the
+    // technicians in a single pass rather than one at a time.
+    public void assignTickets(List<Ticket> toAssign) {
+        if (loops != null) {
+            // Each tier's share is assigned by its own loop
+            CompletableFuture.allOf(distributeOnLoops(toAssign, true)).join();
+            return;
+        }
+        synchronized (writeLock) {
+            version.incrementAndGet();
+            try {
+                distribute(toAssign);
+                addToCreators(toAssign);
+            } finally {
+                version.incrementAndGet();
+            }
+        }
+    }
+
+    // The retriageTickets() method changes the severity of a batch
+    // of tickets and reassigns them, in one change. Each technician
+    // who held any of the tickets has them all removed in a single
+    // pass, and the tickets are then shared out between the
+    // technicians of their new tiers in a single pass, rather than
+    // rerouting one ticket at a time. Archived tickets are skipped.
+    // It returns the number of tickets changed.
+    public int retriageTickets(Collection<Ticket> tickets, Ticket.Severity severity) {
+        if (loops != null) {
+            return retriageOnLoops(tickets, severity);
+        }
+        synchronized (writeLock) {
+            version.incrementAndGet();
+            try {
+                List<Ticket> batch = retriageBatch(tickets);
+                removeFromTechnicians(batch);
+                for (Ticket ticket : batch) {
+                    ticket.setSeverity(severity);
+                }
+                distribute(batch);
+                return batch.size();
+            } finally {
+                version.incrementAndGet();
+            }
+        }
+    }
+
+    // The retriageOnLoops() method does the work of retriageTickets()
+    // in the Partitioned mode, without holding the writeLock. Each
+    // tier's loop takes its own tickets away from their technicians,
+    // changes their severity, and shares out again any which stay in
+    // the tier. The rest are then handed to the loops of their new
+    // tiers. A ticket whose technician changed tier before its loop
+    // got to it is sent round again.
+    private int retriageOnLoops(Collection<Ticket> tickets, Ticket.Severity severity) {
+        List<Ticket> batch = retriageBatch(tickets);
+        List<Ticket> pending = batch;
+        while (!pending.isEmpty()) {
+            Map<Tier, List<Ticket>> byTier = new EnumMap<>(Tier.class);
+            List<Ticket> unowned = new ArrayList<>();
+            for (Ticket ticket : pending) {
+                User technician = ticket.getAssignedTechnician();
+                Tier tier = technician == null ? null : roster.tierOf(technician);
+                if (tier != null) {
+                    byTier.computeIfAbsent(tier, t -> new ArrayList<>()).add(ticket);
+                } else {
+                    unowned.add(ticket);
+                }
+            }
+            // A technician who has left the desk has no loop, so
+            // their tickets are taken away here instead
+            inTransit.addAll(unowned);
+            removeFromTechnicians(unowned);
+            for (Ticket ticket : unowned) {
+                ticket.setSeverity(severity);
+            }
+            CompletableFuture<?>[] assigned = distributeOnLoops(unowned, false);
+            List<CompletableFuture<RetriageResult>> removed = new ArrayList<>(byTier.size());
+            for (Map.Entry<Tier, List<Ticket>> entry : byTier.entrySet()) {
+                List<Ticket> owned = entry.getValue();
+                Tier tier = entry.getKey();
+                removed.add(loops[tier.ordinal()].call(() -> retriageOnLoop(owned, tier, severity)));
+            }
+            try {
+                CompletableFuture.allOf(assigned).join();
+            } finally {
+                inTransit.removeAll(unowned);
+            }
+            pending = new ArrayList<>();
+            List<Ticket> moving = new ArrayList<>();
+            int handoffs = 0;
+            for (CompletableFuture<RetriageResult> future : removed) {
+                RetriageResult result = future.join();
+                pending.addAll(result.stray);
+                if (!result.moving.isEmpty()) {
+                    moving.addAll(result.moving);
+                    handoffs++;
+                }
+            }
+            try {
+                CompletableFuture.allOf(distributeOnLoops(moving, false)).join();
+            } finally {
+                inTransit.removeAll(moving);
+                handoffsFinished.addAndGet(handoffs);
+            }
+        }
+        return batch.size();
+    }
+
+    // The RetriageResult class is what a tier's loop hands back
+    // from retriageOnLoop(): the tickets to go to another tier,
+    // and any which turned out not to be in the tier at all.
+    private static final class RetriageResult {
+        private final List<Ticket> moving;
+        private final List<Ticket> stray;
+
+        private RetriageResult(List<Ticket> moving, List<Ticket> stray) {
+            this.moving = moving;
+            this.stray = stray;
+        }
+    }
+
+    // The retriageOnLoop() method is the part of retriageOnLoops()
+    // run by a tier's loop. If any tickets are leaving the tier, a
+    // handoff is started before the tier is published without them.
+    private RetriageResult retriageOnLoop(List<Ticket> tickets, Tier tier, Ticket.Severity severity) {
+        List<Ticket> owned = new ArrayList<>(tickets.size());
+        List<Ticket> stray = new ArrayList<>();
+        for (Ticket ticket : tickets) {
+            User technician = ticket.getAssignedTechnician();
+            if (technician != null && roster.tierOf(technician) == tier) {
+                owned.add(ticket);
+            } else {
+                stray.add(ticket);
+            }
+        }
+        // Until they are shared out again, the tickets are in no
+        // technician's list, so they mustn't be put back in a queue
+        inTransit.addAll(owned);
+        removeFromTechnicians(owned);
+        List<Ticket> staying = new ArrayList<>();
+        List<Ticket> moving = new ArrayList<>();
+        for (Ticket ticket : owned) {
+            ticket.setSeverity(severity);
+            if (tierFor(ticket) == tier) {
+                staying.add(ticket);
+            } else {
+                moving.add(ticket);
+            }
+        }
+        distribute(staying, tier);
+        settle(staying);
+        if (!moving.isEmpty()) {
+            handoffsStarted.incrementAndGet();
+        }
+        publish(tier);
+        return new RetriageResult(moving, stray);
+    }
+
+    // The retriageBatch() method returns the tickets to be
+    // retriaged, leaving out archived tickets and repeats.
+    private static List<Ticket> retriageBatch(Collection<Ticket> tickets) {
+        List<Ticket> batch = new ArrayList<>(tickets.size());
+        Set<Ticket> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Ticket ticket : tickets) {
+            if (!ticket.getIsArchived() && seen.add(ticket)) {
+                batch.add(ticket);
+            }
+        }
+        return batch;
+    }
+
+    // The removeFromTechnicians() method takes tickets away from
+    // the technicians they are assigned to, with a single pass over
+    // each technician's list.
+    private static void removeFromTechnicians(List<Ticket> tickets) {
+        Map<User, Set<Ticket>> byTechnician = new IdentityHashMap<>();
+        for (Ticket ticket : tickets) {
+            User technician = ticket.getAssignedTechnician();
+            if (technician != null) {
+                byTechnician.computeIfAbsent(technician,
+                        t -> Collections.newSetFromMap(new IdentityHashMap<>())).add(ticket);
+            }
+        }
+        for (Map.Entry<User, Set<Ticket>> entry : byTechnician.entrySet()) {
+            User technician = entry.getKey();
+            Set<Ticket> removing = entry.getValue();
+            technician.getTicketList().removeIf(removing::contains);
+            for (Ticket ticket : removing) {
+                technician.getOpenQueue().remove(ticket);
+            }
+        }
+    }
+
+    // The snapshot() method takes a consistent snapshot of every
+    // technician's tickets. If a change is made while the snapshot
+    // is being taken, it simply takes it again. In the Partitioned
+    // mode, it is put together from what each tier last published,
+    // checked against the version in the same way, as a change
+    // which spans the tiers can publish them one at a time, and
+    // against the handoffs, so it never sees a retriaged ticket
+    // in both tiers or in neither.
+    public DeskSnapshot snapshot() {
+        for (int attempt = 0; views != null; attempt++) {
+            long finished = handoffsFinished.get();
+            long started = handoffsStarted.get();
+            long before = version.get();
+            if ((before & 1) == 0 && started == finished) {
+                TierView level1 = views.get(Tier.Level1.ordinal());
+                TierView level2 = views.get(Tier.Level2.ordinal());
+                if (version.get() == before && handoffsStarted.get() == started) {
+                    return new DeskSnapshot(before + level1.version + level2.version, level1.technicians,
+                            level1.tickets, level2.technicians, level2.tickets);
+                }
+            }
+            backOff(attempt);
+        }
+        for (int attempt = 0; ; attempt++) {
+            long before = version.get();
+            if ((before & 1) == 0) {
+                TechnicianRoster current = roster;
+                User[] techniciansLevel1 = current.getMembers(Tier.Level1);
+                User[] techniciansLevel2 = current.getMembers(Tier.Level2);
+                TicketList.Snapshot[] ticketsLevel1 = captureTickets(techniciansLevel1);
+                TicketList.Snapshot[] ticketsLevel2 = captureTickets(techniciansLevel2);
+                if (version.get() == before) {
+                    return new DeskSnapshot(before, techniciansLevel1, ticketsLevel1,
+                            techniciansLevel2, ticketsLevel2);
+                }
+            }
+            backOff(attempt);
+        }
+    }
+
+    // The backOff() method waits before snapshot() tries again. It
+    // spins at first, as most changes are over in microseconds, then
+    // yields, and then parks for longer each time, so a reader
+    // waiting out a long change doesn't keep a core busy.
+    private static void backOff(int attempt) {
+        if (attempt < SPIN_ATTEMPTS) {
+            Thread.onSpinWait();
+        } else if (attempt < SPIN_ATTEMPTS + YIELD_ATTEMPTS) {
+            Thread.yield();
+        } else {
+            int shift = Math.min(attempt - SPIN_ATTEMPTS - YIELD_ATTEMPTS, MAX_BACKOFF_SHIFT);
+            LockSupport.parkNanos(MIN_PARK_NANOS << shift);
+        }
+    }
+
+    private static TicketList.Snapshot[] captureTickets(User[] technicians) {
+        TicketList.Snapshot[] tickets = new TicketList.Snapshot[technicians.length];
+        for (int i = 0; i < technicians.length; i++) {
+            tickets[i] = technicians[i].getTicketList().snapshot();
+        }
+        return tickets;
     }
 
     // The automaticallyRefreshTickets() method is used to automatically
@@ -92,8 +876,9 @@ public class ServiceDesk {
     public void automaticallyRefreshTickets() {
         // The tickets are stored in the technician
         // So process everything for each technician
-        processAllUserTickets(techniciansLevel1);
-        processAllUserTickets(techniciansLevel2);
+        TechnicianRoster current = roster;
+        processAllUserTickets(current.getMembers(Tier.Level1));
+        processAllUserTickets(current.getMembers(Tier.Level2));
     }
 
     // The processAllUserTickets method is used to process
@@ -112,38 +897,69 @@ public class ServiceDesk {
     }
 
     // The returnAllTickets() method is used to return
-    // all the tickets assigned to a particular technician.
+    // all the tickets assigned to any technician.
     public ArrayList<Ticket> returnAllTickets() {
         ArrayList<Ticket> allTickets = new ArrayList<Ticket>();
-
-        for (User technician : techniciansLevel1) {
-            List<Ticket> tickets = technician.getTickets();
-            // For every ticket
-            for (Ticket ticket : tickets) {
-                // add to the list
-                allTickets.add(ticket);
-            }
-        }
-
-        // Getting my LoC count up
-        for (User technician : techniciansLevel2) {
-            List<Ticket> tickets = technician.getTickets();
-            // For every ticket
-            for (Ticket ticket : tickets) {
-                // add to the list
-                allTickets.add(ticket);
-            }
-        }
-
+        // Work from a snapshot, so a ticket being reassigned part way
+        // through isn't missed or added twice. Only assigned tickets
+        // are in technicians' lists, so each ticket is there once
+        snapshot().forEachTicket(allTickets::add);
         return allTickets;
     }
     
+    // The forEachTicket() method is used to walk through
+    // every ticket on the service desk without copying them
+    // into a list first. If a technician is given, only
+    // their tickets are walked through.
+    public void forEachTicket(User technician, Consumer<Ticket> action) {
+        DeskSnapshot snapshot = snapshot();
+        if (technician != null) {
+            snapshot.forEachTicket(technician, action);
+        } else {
+            snapshot.forEachTicket(action);
+        }
+    }
+
     // The returnAllClosedAndArchivedTickets() method is used to
     // return an arraylist of all closed and archived tickets. This
     // is usefule in multiple sections of the code later on.
     public ArrayList<Ticket> returnAllClosedAndArchivedTickets() {
-        ArrayList<Ticket> closedAndArchivedTickets = this.returnAllTickets();
-        closedAndArchivedTickets.removeIf(e -> e.getIsOpen());
-        return closedAndArchivedTickets;
+        return findTickets(TicketQuery.allTickets().withClosed());
+    }
+
+    // The query() method returns the tickets matching a query, from
+    // a snapshot taken now. The tickets are found as they are
+    // iterated over, rather than all at once.
+    public Iterable<Ticket> query(TicketQuery query) {
+        return query.run(snapshot());
+    }
+
+    // This version of query() finds the tickets in a snapshot the
+    // caller has already taken.
+    public Iterable<Ticket> query(DeskSnapshot snapshot, TicketQuery query) {
+        return query.run(snapshot);
+    }
+
+    // The findTickets() method returns a list of the
+    // tickets matching a query.
+    public ArrayList<Ticket> findTickets(TicketQuery query) {
+        ArrayList<Ticket> found = new ArrayList<>();
+        query(query).forEach(found::add);
+        return found;
+    }
+
+    // The generatePeriodReport() method is used to build a
+    // report of all the tickets created between two dates
+    // (inclusive), broken down by day, severity, tier and
+    // technician.
+    public PeriodReport generatePeriodReport(LocalDate startDate, LocalDate endDate) {
+        return generatePeriodReport(snapshot(), startDate, endDate);
+    }
+
+    // This version of generatePeriodReport() builds the report
+    // from a snapshot the caller has already taken, so the caller
+    // can go on to list the very same tickets the report counted.
+    public PeriodReport generatePeriodReport(DeskSnapshot snapshot, LocalDate startDate, LocalDate endDate) {
+        return PeriodReport.generate(snapshot, startDate, endDate);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,57 @@
+// The Session class is a single logged in user, found by a random
+// token, which ends once it hasn't been used for a while. Each
+// session has its own dashboard, kept up to date by the
+// SessionStore as the user's tickets change.
+
+public class Session {
+    private final String token;
+    private final User user;
+    private final Department department;
+    private final Dashboard dashboard;
+    private volatile long lastUsed;
+
+    // The Session() method is the constructor for the Session
+    // class. Sessions are created by SessionStore.open().
+    Session(String token, User user, Department department, long now) {
+        this.token = token;
+        this.user = user;
+        this.department = department;
+        this.dashboard = new Dashboard(user, department.getServiceDesk());
+        this.lastUsed = now;
+    }
+
+    // The getToken() method is a getter method, for
+    // the token the session is found by.
+    public String getToken() {
+        return this.token;
+    }
+
+    // The getUser() method is a getter method,
+    // for the user who is logged in.
+    public User getUser() {
+        return this.user;
+    }
+
+    // The getDepartment() method is a getter method, for
+    // the department the user is logged in to.
+    public Department getDepartment() {
+        return this.department;
+    }
+
+    // The getDashboard() method is a getter method,
+    // for the user's dashboard.
+    public Dashboard getDashboard() {
+        return this.dashboard;
+    }
+
+    // The getLastUsed() method is a getter method, for when the
+    // session was last used, in milliseconds since the epoch.
+    public long getLastUsed() {
+        return this.lastUsed;
+    }
+
+    // The touch() method records that the session was used.
+    void touch(long now) {
+        this.lastUsed = now;
+    }
+}
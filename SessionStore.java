@@ -0,0 +1,163 @@
+// The SessionStore class holds every logged in user's session, for
+// any number of users logged in at once, from any department. Each
+// session is found by its token, and ends once it hasn't been used
+// for longer than the idle timeout.
+//
+// The store listens to every department's service desk, and passes
+// each ticket change on to the dashboards of only the users it
+// affects: the ticket's technicians and whoever submitted it. So a
+// change costs a couple of lookups, and dashboards are only worked
+// out again for the users whose tickets have actually changed.
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class SessionStore implements TicketListener {
+    private static final int TOKEN_BYTES = 32;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final long idleTimeoutMillis;
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+    // The sessions of each logged in user, as a user
+    // may be logged in more than once
+    private final ConcurrentHashMap<User, Set<Session>> sessionsByUser = new ConcurrentHashMap<>();
+
+    // The SessionStore() method is the constructor for the
+    // SessionStore class. Sessions end once they haven't been
+    // used for the idle timeout.
+    public SessionStore(Duration idleTimeout) {
+        this.idleTimeoutMillis = idleTimeout.toMillis();
+    }
+
+    // The open() method starts a new session for a user
+    // who has just logged in to a department.
+    public Session open(User user, Department department) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        RANDOM.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        Session session = new Session(token, user, department, System.currentTimeMillis());
+        sessionsByUser.computeIfAbsent(user, u -> ConcurrentHashMap.newKeySet()).add(session);
+        sessions.put(token, session);
+        return session;
+    }
+
+    // The get() method returns the session with a token, and
+    // records that it was used, or returns null if there is no
+    // such session or it has ended.
+    public Session get(String token) {
+        Session session = sessions.get(token);
+        if (session == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (now - session.getLastUsed() > idleTimeoutMillis) {
+            remove(session);
+            return null;
+        }
+        session.touch(now);
+        return session;
+    }
+
+    // The close() method ends a session, such as when
+    // the user logs out.
+    public void close(String token) {
+        Session session = sessions.get(token);
+        if (session != null) {
+            remove(session);
+        }
+    }
+
+    // The expireSessions() method ends every session which hasn't
+    // been used for the idle timeout, and returns how many it ended.
+    public int expireSessions() {
+        long now = System.currentTimeMillis();
+        int expired = 0;
+        for (Session session : sessions.values()) {
+            if (now - session.getLastUsed() > idleTimeoutMillis) {
+                remove(session);
+                expired++;
+            }
+        }
+        return expired;
+    }
+
+    // The getSessionCount() method returns the
+    // number of sessions which haven't ended.
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    private void remove(Session session) {
+        if (sessions.remove(session.getToken(), session)) {
+            sessionsByUser.computeIfPresent(session.getUser(), (user, userSessions) -> {
+                userSessions.remove(session);
+                return userSessions.isEmpty() ? null : userSessions;
+            });
+        }
+    }
+
+    // The ticketAssigned() method marks the open tickets of both
+    // technicians as out of date, and tells the submitter's
+    // dashboards about the ticket.
+    @Override
+    public void ticketAssigned(Ticket ticket, User oldTechnician, User newTechnician) {
+        invalidate(oldTechnician);
+        invalidate(newTechnician);
+        ticketChanged(ticket.getCreatedBy(), ticket);
+    }
+
+    // The ticketSeverityChanged() method marks the open tickets of
+    // the technician as out of date, as the order of their tickets
+    // may have changed, and tells the submitter's dashboards.
+    @Override
+    public void ticketSeverityChanged(Ticket ticket, Ticket.Severity oldSeverity, Ticket.Severity newSeverity) {
+        invalidate(ticket.getAssignedTechnician());
+        ticketChanged(ticket.getCreatedBy(), ticket);
+    }
+
+    // The ticketStatusChanged() method adds a closed ticket to the
+    // recent closures of its technician and submitter, or takes a
+    // reopened ticket out of them.
+    @Override
+    public void ticketStatusChanged(Ticket ticket, Ticket.TicketStatus oldStatus, Ticket.TicketStatus newStatus) {
+        boolean closed = oldStatus == Ticket.TicketStatus.Open;
+        if (!closed && newStatus != Ticket.TicketStatus.Open) {
+            // Only how it was completed has changed
+            return;
+        }
+        for (User user : new User[] { ticket.getAssignedTechnician(), ticket.getCreatedBy() }) {
+            Set<Session> userSessions = user == null ? null : sessionsByUser.get(user);
+            if (userSessions != null) {
+                for (Session session : userSessions) {
+                    if (closed) {
+                        session.getDashboard().ticketClosed(ticket);
+                    } else {
+                        session.getDashboard().ticketReopened(ticket);
+                    }
+                }
+            }
+        }
+    }
+
+    private void ticketChanged(User user, Ticket ticket) {
+        Set<Session> userSessions = user == null ? null : sessionsByUser.get(user);
+        if (userSessions != null) {
+            for (Session session : userSessions) {
+                session.getDashboard().ticketChanged(ticket);
+            }
+        }
+    }
+
+    private void invalidate(User user) {
+        Set<Session> userSessions = user == null ? null : sessionsByUser.get(user);
+        if (userSessions != null) {
+            for (Session session : userSessions) {
+                session.getDashboard().invalidate();
+            }
+        }
+    }
+}
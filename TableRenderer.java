@@ -0,0 +1,127 @@
+// The TableRenderer class writes tables of text to the console, such
+// as listings of tickets. Each row is built up in a buffer which is
+// reused from row to row, with every cell padded out to its column's
+// width, and the whole table is written out at once when it is
+// flushed, rather than every row being formatted and written by its
+// own printf. Dates are written straight into the buffer using
+// formatters made once, rather than a new formatter each time.
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+
+public class TableRenderer {
+    // Dates written as day, month and year.
+    static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    // Once the buffer holds this many characters it is written
+    // out, so a very long table never builds up in memory.
+    private static final int FLUSH_THRESHOLD = 64 * 1024;
+
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final Writer out;
+    private final StringBuilder buffer = new StringBuilder(FLUSH_THRESHOLD + 1024);
+    private final char[] chunk = new char[8192];
+
+    // The TableRenderer() method is the constructor for the
+    // TableRenderer class, writing to a console stream.
+    public TableRenderer(PrintStream out) {
+        this.out = new OutputStreamWriter(out, Charset.defaultCharset());
+    }
+
+    // The cell() method writes text, padded with spaces to
+    // the column's width. Longer text is written in full.
+    public TableRenderer cell(CharSequence text, int width) {
+        int start = buffer.length();
+        buffer.append(text);
+        return pad(start, width);
+    }
+
+    // This version of cell() writes a number.
+    public TableRenderer cell(long value, int width) {
+        int start = buffer.length();
+        buffer.append(value);
+        return pad(start, width);
+    }
+
+    // This version of cell() writes a date, using a
+    // formatter which has been made beforehand.
+    public TableRenderer cell(TemporalAccessor date, DateTimeFormatter format, int width) {
+        int start = buffer.length();
+        format.formatTo(date, buffer);
+        return pad(start, width);
+    }
+
+    // The nameCell() method writes a user's first
+    // and last name, as a single cell, or "Unassigned"
+    // if there is no user.
+    public TableRenderer nameCell(User user, int width) {
+        int start = buffer.length();
+        if (user == null) {
+            buffer.append("Unassigned");
+        } else {
+            buffer.append(user.getFirstName()).append(' ').append(user.getLastName());
+        }
+        return pad(start, width);
+    }
+
+    // The text() method writes text as it is, without padding.
+    public TableRenderer text(CharSequence text) {
+        buffer.append(text);
+        return this;
+    }
+
+    // This version of text() writes a number.
+    public TableRenderer text(long value) {
+        buffer.append(value);
+        return this;
+    }
+
+    // The endRow() method ends the current row.
+    public TableRenderer endRow() {
+        buffer.append(LINE_SEPARATOR);
+        if (buffer.length() >= FLUSH_THRESHOLD) {
+            drain();
+        }
+        return this;
+    }
+
+    // The flush() method writes out everything in
+    // the buffer, and flushes it to the console.
+    public void flush() {
+        drain();
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private TableRenderer pad(int start, int width) {
+        for (int written = buffer.length() - start; written < width; written++) {
+            buffer.append(' ');
+        }
+        return this;
+    }
+
+    // The drain() method copies the buffer to the writer, a chunk
+    // at a time, and empties it ready for the next rows.
+    private void drain() {
+        try {
+            for (int from = 0; from < buffer.length(); from += chunk.length) {
+                int to = Math.min(buffer.length(), from + chunk.length);
+                buffer.getChars(from, to, chunk, 0);
+                out.write(chunk, 0, to - from);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.setLength(0);
+    }
+}
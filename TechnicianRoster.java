@@ -0,0 +1,135 @@
+// The TechnicianRoster class stores which technicians are in
+// each tier of a service desk. A roster is never modified, instead
+// adding, removing or moving a technician creates a new roster,
+// so tickets can keep being assigned from the old one while the
+// change is made.
+//
+// Every technician who still holds tickets is a member of a tier,
+// so their ticket history still shows up in reports, but only the
+// active members of a tier are given new tickets.
+
+import java.util.Arrays;
+
+public class TechnicianRoster {
+    private static final User[] NO_TECHNICIANS = new User[0];
+
+    // Indexed by ServiceDesk.Tier ordinal
+    private final User[][] members;
+    private final User[][] active;
+
+    private TechnicianRoster(User[][] members, User[][] active) {
+        this.members = members;
+        this.active = active;
+    }
+
+    // The of() method creates a roster where every
+    // technician given is an active member of their tier.
+    static TechnicianRoster of(User[] techniciansLevel1, User[] techniciansLevel2) {
+        User[][] technicians = { techniciansLevel1.clone(), techniciansLevel2.clone() };
+        return new TechnicianRoster(technicians, technicians);
+    }
+
+    // The getMembers() method returns every technician in a
+    // tier, including those no longer given new tickets.
+    // The array must not be modified.
+    User[] getMembers(ServiceDesk.Tier tier) {
+        return members[tier.ordinal()];
+    }
+
+    // The getActive() method returns the technicians in a tier
+    // who are given new tickets. The array must not be modified.
+    User[] getActive(ServiceDesk.Tier tier) {
+        return active[tier.ordinal()];
+    }
+
+    // The tierOf() method returns the tier a technician is a
+    // member of, or null if they are not a member of any tier.
+    ServiceDesk.Tier tierOf(User technician) {
+        for (ServiceDesk.Tier tier : ServiceDesk.Tier.values()) {
+            if (indexOf(members[tier.ordinal()], technician) >= 0) {
+                return tier;
+            }
+        }
+        return null;
+    }
+
+    // The isActive() method checks whether a technician
+    // is being given new tickets.
+    boolean isActive(User technician) {
+        for (User[] tierActive : active) {
+            if (indexOf(tierActive, technician) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // The withActive() method returns a roster where the technician
+    // is an active member of the tier, and of no other tier.
+    TechnicianRoster withActive(User technician, ServiceDesk.Tier tier) {
+        TechnicianRoster without = without(technician);
+        User[][] newMembers = without.members.clone();
+        User[][] newActive = without.active.clone();
+        newMembers[tier.ordinal()] = append(newMembers[tier.ordinal()], technician);
+        newActive[tier.ordinal()] = append(newActive[tier.ordinal()], technician);
+        return new TechnicianRoster(newMembers, newActive);
+    }
+
+    // The withInactive() method returns a roster where the technician
+    // is no longer given new tickets. They are only kept as a member
+    // of their tier if they still hold tickets.
+    TechnicianRoster withInactive(User technician) {
+        ServiceDesk.Tier tier = tierOf(technician);
+        if (tier == null) {
+            return this;
+        }
+        TechnicianRoster without = without(technician);
+        if (technician.getTicketList().size() == 0) {
+            return without;
+        }
+        User[][] newMembers = without.members.clone();
+        newMembers[tier.ordinal()] = append(newMembers[tier.ordinal()], technician);
+        return new TechnicianRoster(newMembers, without.active);
+    }
+
+    // The without() method returns a roster without the
+    // technician in any tier.
+    private TechnicianRoster without(User technician) {
+        User[][] newMembers = members.clone();
+        User[][] newActive = active.clone();
+        for (int i = 0; i < newMembers.length; i++) {
+            newMembers[i] = remove(newMembers[i], technician);
+            newActive[i] = remove(newActive[i], technician);
+        }
+        return new TechnicianRoster(newMembers, newActive);
+    }
+
+    private static int indexOf(User[] technicians, User technician) {
+        for (int i = 0; i < technicians.length; i++) {
+            if (technicians[i] == technician) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static User[] append(User[] technicians, User technician) {
+        User[] appended = Arrays.copyOf(technicians, technicians.length + 1);
+        appended[technicians.length] = technician;
+        return appended;
+    }
+
+    private static User[] remove(User[] technicians, User technician) {
+        int index = indexOf(technicians, technician);
+        if (index < 0) {
+            return technicians;
+        }
+        if (technicians.length == 1) {
+            return NO_TECHNICIANS;
+        }
+        User[] removed = new User[technicians.length - 1];
+        System.arraycopy(technicians, 0, removed, 0, index);
+        System.arraycopy(technicians, index + 1, removed, index, technicians.length - index - 1);
+        return removed;
+    }
+}
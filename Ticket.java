@@ -5,6 +5,7 @@ import java.time.LocalDate;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 import java.time.format.DateTimeFormatter;
 
 public class Ticket {
@@ -27,61 +28,138 @@ public class Ticket {
         CompletedUnresolved,
     }
 
-    boolean archived = false;
-    private String description;
-    private Severity severity;
-    private TicketStatus ticketStatus;
-    private LocalDate dateCompleted, dateCreated;
+    // The format of getDateCreatedString(), made once
+    // rather than every time a date is written.
+    static final DateTimeFormatter DATE_CREATED_FORMAT = DateTimeFormatter.ofPattern("yyyy/MM/dd");
+
+    // The State class holds everything about a ticket which can
+    // change after it is created. It is never modified, instead
+    // every change replaces the ticket's State with a new one, so
+    // a reader who takes the State once always sees a consistent
+    // view of the ticket, even while it is being updated.
+    static final class State {
+        final Severity severity;
+        final TicketStatus ticketStatus;
+        final LocalDate dateCompleted;
+        final boolean archived;
+        final User assignedTechnician;
+        final Instant timeMarkedCompleted;
+
+        State(Severity severity, TicketStatus ticketStatus, LocalDate dateCompleted, boolean archived,
+                User assignedTechnician, Instant timeMarkedCompleted) {
+            this.severity = severity;
+            this.ticketStatus = ticketStatus;
+            this.dateCompleted = dateCompleted;
+            this.archived = archived;
+            this.assignedTechnician = assignedTechnician;
+            this.timeMarkedCompleted = timeMarkedCompleted;
+        }
+
+        State withSeverity(Severity severity) {
+            return new State(severity, ticketStatus, dateCompleted, archived, assignedTechnician,
+                    timeMarkedCompleted);
+        }
+
+        State withTicketStatus(TicketStatus ticketStatus) {
+            return new State(severity, ticketStatus, dateCompleted, archived, assignedTechnician,
+                    timeMarkedCompleted);
+        }
+
+        State withDateCompleted(LocalDate dateCompleted) {
+            return new State(severity, ticketStatus, dateCompleted, archived, assignedTechnician,
+                    timeMarkedCompleted);
+        }
+
+        State withArchived(boolean archived) {
+            return new State(severity, ticketStatus, dateCompleted, archived, assignedTechnician,
+                    timeMarkedCompleted);
+        }
+
+        State withAssignedTechnician(User assignedTechnician) {
+            return new State(severity, ticketStatus, dateCompleted, archived, assignedTechnician,
+                    timeMarkedCompleted);
+        }
+
+        State withTimeMarkedCompleted(Instant timeMarkedCompleted) {
+            return new State(severity, ticketStatus, dateCompleted, archived, assignedTechnician,
+                    timeMarkedCompleted);
+        }
+    }
+
+    // Descriptions are kept in a single store shared by every
+    // ticket, so identical descriptions are only stored once
+    private static final DescriptionStore DESCRIPTIONS = new DescriptionStore();
+
+    private volatile State state;
+    // The number of the description in DESCRIPTIONS
+    private volatile int description;
+    private LocalDate dateCreated;
+    private Instant timeCreated;
+
+    // Whether a technician has started working on the ticket,
+    // which is taken to be when its status is first changed, and
+    // when it was last moved between technicians by the service desk.
+    private volatile boolean started;
+    private volatile Instant timeLastMoved;
+
+    // Whether the ticket has ever been completed, so its time to
+    // resolve is only counted once, however often it is reopened.
+    private boolean resolved;
 
     private UUID uuid = UUID.randomUUID();
+
+    // Every ticket is numbered in the order it was created, which
+    // is used to order tickets by age, without comparing times.
+    private static final AtomicLong nextSequence = new AtomicLong();
+    private final long sequence = nextSequence.incrementAndGet();
+
+    // Where the ticket is in its technician's TicketQueue,
+    // or -1 if it is not in a queue.
+    private volatile int queueIndex = -1;
     // This stores the users which created this ticket's email so it can be
     // accessed without searching through the list of all staff.
     private User createdBy;
 
-    // This stores the technical who is currently assigned to this ticket.
-    private User assignedTechnician;
+    // This is told about changes to the ticket, once it has been
+    // handed to the service desk.
+    private TicketListener listener;
 
     // The Ticket() method is a constructor for the Ticket class.
     public Ticket(String description, String severity, User creator) {
         setValue(description, creator);
+        Severity parsedSeverity;
         if (severity.compareTo("1") == 0) {
-            this.severity = Severity.Low;
+            parsedSeverity = Severity.Low;
         } else if (severity.compareTo("2") == 0) {
-            this.severity = Severity.Medium;
+            parsedSeverity = Severity.Medium;
         } else if (severity.compareTo("3") == 0) {
-            this.severity = Severity.High;
+            parsedSeverity = Severity.High;
         } else {
-            this.severity = null;
+            parsedSeverity = null;
         }
-        this.ticketStatus = TicketStatus.Open;
+        // There is no date completed because we are just creating the ticket now,
+        // and no technician until the service desk assigns one.
+        this.state = new State(parsedSeverity, TicketStatus.Open, null, false, null, null);
     }
 
     // The setValue method, sets the values for the constructors
     // so as to avoid code repetition.
     private void setValue(String description, User creator) {
-        this.description = description;
-        // There is no date completed because we are just creating the ticket now,
-        // rather than accepting strings,
-        // Please accept a Date, forcing the caller to either conform the date
-        // themselves, or pass null
-        // this.dateCompleted = LocalDate.parse(dateCompleted,
-        // DateTimeFormatter.ofPattern("yyyy-MMM-dd"));
-        // Placeholder:
-        this.dateCompleted = null;
+        this.description = DESCRIPTIONS.intern(description);
         this.createdBy = creator;
-        this.assignedTechnician = null;
         this.dateCreated = LocalDate.now();
+        this.timeCreated = Instant.now();
     }
 
     // The setTicketStatus method sets the value of the TicketStatus
     // when an integer is used for the constructor
     private void setTicketStatus(int status) {
         if (status == 0) {
-            this.ticketStatus = TicketStatus.valueOf("Open");
+            this.setTicketStatus(TicketStatus.valueOf("Open"));
         } else if (status == 1) {
-            this.ticketStatus = TicketStatus.valueOf("CompletedResolved");
+            this.setTicketStatus(TicketStatus.valueOf("CompletedResolved"));
         } else if (status == 2) {
-            this.ticketStatus = TicketStatus.valueOf("CompletedUnresolved");
+            this.setTicketStatus(TicketStatus.valueOf("CompletedUnresolved"));
         }
     }
 
@@ -105,40 +183,72 @@ public class Ticket {
     }
 
     // The getDescription() method is a getter method,
-    // for the ticket's description.
+    // for the ticket's description. The description is
+    // read out of the store each time it is asked for.
     public String getDescription() {
-        return this.description;
+        return DESCRIPTIONS.get(this.description);
     }
 
     // The setDescription() method is a setter method,
     // for the ticket's description.
     public void setDescription(String description) {
-        this.description = description;
+        this.description = DESCRIPTIONS.intern(description);
+    }
+
+    // The getDescriptionStore() method returns the
+    // store every ticket's description is kept in.
+    static DescriptionStore getDescriptionStore() {
+        return DESCRIPTIONS;
     }
 
     // The getSeverity() method is a getter method,
     // for the ticket's severity.
     public Severity getSeverity() {
-        return this.severity;
+        return this.state.severity;
     }
 
     // The setSeverity() method is a setter method,
     // for the ticket's severity.
     public void setSeverity(Severity severity) {
-        this.severity = severity;
+        Severity oldSeverity;
+        synchronized (this) {
+            oldSeverity = this.state.severity;
+            replaceState(this.state.withSeverity(severity));
+        }
+        if (listener != null && oldSeverity != severity) {
+            listener.ticketSeverityChanged(this, oldSeverity, severity);
+        }
     }
 
     // The getTicketStatus() method is a getter method,
     // for the ticket's status.
     public TicketStatus getTicketStatus() {
-        return this.ticketStatus;
+        return this.state.ticketStatus;
+    }
+
+    // The getState() method returns everything about the
+    // ticket which can change, as it is right now.
+    State getState() {
+        return this.state;
+    }
+
+    // The replaceState() method swaps in the ticket's new State, and
+    // tells the listener about it. It must only be called while
+    // holding the ticket's lock, so that changes to a ticket are
+    // always reported in the order they were made.
+    private void replaceState(State newState) {
+        State oldState = this.state;
+        this.state = newState;
+        if (listener != null && oldState != newState) {
+            listener.ticketStateChanged(this, oldState, newState);
+        }
     }
 
     // The getTicketStatusString() method is a getter
     // method, retrieving the ticket's status as a
     // string.
     public String getTicketStatusString() {
-        switch (this.ticketStatus) {
+        switch (this.state.ticketStatus) {
             case Open:
                 return "Open";
             case CompletedResolved:
@@ -152,34 +262,42 @@ public class Ticket {
     // The setTicketStatus() method is a setter method,
     // for the ticket's status.
     public void setTicketStatus(TicketStatus ticketStatus) {
-        this.ticketStatus = ticketStatus;
-        refreshTicketStatus();
+        TicketStatus oldStatus;
+        synchronized (this) {
+            oldStatus = this.state.ticketStatus;
+            replaceState(this.state.withTicketStatus(ticketStatus));
+            this.started = true;
+            refreshTicketStatus();
+        }
+        if (listener != null && oldStatus != ticketStatus) {
+            listener.ticketStatusChanged(this, oldStatus, ticketStatus);
+        }
     }
 
-    // We're not using this.dateCompleted because that may be managed and changed
-    // externally
-    private Instant timeMarkedCompleted;
-
-    // Automatically archive ticket if marked complete over 24 hours ago
-    public void refreshTicketStatus() {
+    // Automatically archive ticket if marked complete over 24 hours ago.
+    // We're not using dateCompleted because that may be managed and changed
+    // externally, so the State keeps its own timeMarkedCompleted.
+    public synchronized void refreshTicketStatus() {
+        State current = this.state;
         // Make sure the ticket hasn't been marked Open, otherwise ignore the call
-        if (this.ticketStatus == TicketStatus.Open) {
-            timeMarkedCompleted = null;
-            return;
-        } else if (this.ticketStatus == null) {
-            timeMarkedCompleted = null;
+        if (current.ticketStatus == TicketStatus.Open || current.ticketStatus == null) {
+            if (current.timeMarkedCompleted != null) {
+                replaceState(current.withTimeMarkedCompleted(null));
+            }
             // Bail out
             return;
         }
         // We have a valid ticketStatus that isn't open, check if we already have a
         // valid time,
         // and if not, update it now:
-        if (timeMarkedCompleted == null) {
-            timeMarkedCompleted = Instant.now();
+        if (current.timeMarkedCompleted == null) {
+            current = current.withTimeMarkedCompleted(Instant.now());
+            replaceState(current);
         }
 
         // Check if it's been more that 24 hours
-        if (timeMarkedCompleted.isBefore(Instant.now().minus(24, ChronoUnit.HOURS))) {
+        if (!current.archived
+                && current.timeMarkedCompleted.isBefore(Instant.now().minus(24, ChronoUnit.HOURS))) {
             setIsArchived(true);
         }
     }
@@ -187,13 +305,20 @@ public class Ticket {
     // The getDateCompleted() method is a getter method,
     // for the ticket's date.
     public LocalDate getDateCompleted() {
-        return this.dateCompleted;
+        return this.state.dateCompleted;
+    }
+
+    // The getTimeMarkedCompleted() method is a getter method, for
+    // when the ticket's status was last changed to completed, or
+    // null if it is open.
+    public Instant getTimeMarkedCompleted() {
+        return this.state.timeMarkedCompleted;
     }
 
     // The setDateCompleted() method is a setter method,
     // for the ticket's date.
-    public void setDateCompleted(LocalDate dateCompleted) {
-        this.dateCompleted = dateCompleted;
+    public synchronized void setDateCompleted(LocalDate dateCompleted) {
+        replaceState(this.state.withDateCompleted(dateCompleted));
     }
 
     // The getDateCreated() method is a getter method,
@@ -205,10 +330,32 @@ public class Ticket {
     // The getDateCreatedString() method is a getter method,
     // used to retrieve the date the ticket was created.
     public String getDateCreatedString() {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy/MM/dd");
-        String formattedDate = this.dateCreated.format(formatter);
-        return formattedDate;
+        return this.dateCreated.format(DATE_CREATED_FORMAT);
+    }
+
+    // The getTimeCreated() method is a getter method,
+    // for the exact time the ticket was created.
+    public Instant getTimeCreated() {
+        return this.timeCreated;
+    }
+
+    // The getIsStarted() method is a getter method, for
+    // whether a technician has started working on the ticket.
+    public boolean getIsStarted() {
+        return this.started;
+    }
 
+    // The getTimeLastMoved() method is a getter method, for when
+    // the ticket was last moved between technicians, or null if
+    // it has never been moved.
+    public Instant getTimeLastMoved() {
+        return this.timeLastMoved;
+    }
+
+    // The setTimeLastMoved() method is a setter method, for when
+    // the ticket was last moved between technicians.
+    void setTimeLastMoved(Instant timeLastMoved) {
+        this.timeLastMoved = timeLastMoved;
     }
 
     // The setDateCreated() method is a setter method,
@@ -220,11 +367,11 @@ public class Ticket {
     // The getIsArchived() method is a getter method,
     // for the ticket's archived status.
     public boolean getIsArchived() {
-        return this.archived;
+        return this.state.archived;
     }
 
     public boolean getIsOpen() {
-        boolean isOpen = this.ticketStatus == TicketStatus.Open;
+        boolean isOpen = this.state.ticketStatus == TicketStatus.Open;
         if (isOpen) {
             return true;
         } else {
@@ -234,29 +381,63 @@ public class Ticket {
 
     // The setIsArchived() method is a setter method,
     // for the ticket's archived status.
-    public void setIsArchived(boolean isArchived) {
-        this.archived = isArchived;
+    public synchronized void setIsArchived(boolean isArchived) {
+        replaceState(this.state.withArchived(isArchived));
     }
 
     // The getAssignedTechnician method is a getter method
     // for the assigned technician.
     public User getAssignedTechnician() {
-        return this.assignedTechnician;
+        return this.state.assignedTechnician;
     }
 
     // The setAssignedTechnician method is a setter method
     // for the assigned technician
-    public void setAssignedTechnician(User assignedTechnician) {
-        this.assignedTechnician = assignedTechnician;
+    public synchronized void setAssignedTechnician(User assignedTechnician) {
+        replaceState(this.state.withAssignedTechnician(assignedTechnician));
     }
 
     // The AssignTicket method is used to assign a ticket
     // to a particular technician.
     public void AssignTicket(User assignTo) {
-        this.assignedTechnician = assignTo;
+        setAssignedTechnician(assignTo);
         assignTo.assignTicket(this);
     }
     
+    // The markResolved() method records that the ticket has been
+    // completed, and returns true only the first time it is called.
+    synchronized boolean markResolved() {
+        if (resolved) {
+            return false;
+        }
+        resolved = true;
+        return true;
+    }
+
+    // The setListener() method is a setter method
+    // for the listener told about changes to this ticket.
+    void setListener(TicketListener listener) {
+        this.listener = listener;
+    }
+
+    // The getSequence() method is a getter method, for the
+    // number of the ticket in the order tickets were created.
+    public long getSequence() {
+        return this.sequence;
+    }
+
+    // The getQueueIndex() method is a getter method, for where
+    // the ticket is in its technician's TicketQueue.
+    int getQueueIndex() {
+        return this.queueIndex;
+    }
+
+    // The setQueueIndex() method is a setter method, for where
+    // the ticket is in its technician's TicketQueue.
+    void setQueueIndex(int queueIndex) {
+        this.queueIndex = queueIndex;
+    }
+
     // The method getUUID() is a getter method
     // used to retrieve a tickets UUID.
     public UUID getUUID() {
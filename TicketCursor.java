@@ -0,0 +1,118 @@
+// The TicketCursor class pages through a listing of tickets, such as
+// the results of a query, a fixed number of tickets at a time. The
+// tickets are only fetched from the listing as the pages are turned,
+// so the first page of a very long listing is shown without finding
+// every ticket first. Each ticket is numbered by its position in the
+// listing, and the tickets fetched are kept in order, so a number
+// chosen from any page shown so far is turned back into its ticket
+// directly, and keeps the same number however the pages are turned.
+//
+// A cursor should be given tickets from a single snapshot, so the
+// listing doesn't change under it while it is open.
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+public class TicketCursor {
+    private final Iterator<Ticket> source;
+    private final int pageSize;
+    private final ArrayList<Ticket> rows = new ArrayList<>();
+    private int page;
+
+    // The TicketCursor() method is the constructor for the
+    // TicketCursor class, showing the tickets pageSize at a time.
+    public TicketCursor(Iterable<Ticket> tickets, int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("The page size must be at least 1");
+        }
+        this.source = tickets.iterator();
+        this.pageSize = pageSize;
+    }
+
+    // The isEmpty() method checks whether
+    // the listing has no tickets at all.
+    public boolean isEmpty() {
+        fill(1);
+        return rows.isEmpty();
+    }
+
+    // The getPage() method is a getter method, for the
+    // number of the page being shown, starting from 1.
+    public int getPage() {
+        return this.page + 1;
+    }
+
+    // The getPageSize() method is a getter method, for
+    // the most tickets shown on a single page.
+    public int getPageSize() {
+        return this.pageSize;
+    }
+
+    // The getFirstRowNumber() method returns the number
+    // of the first ticket on the page being shown.
+    public int getFirstRowNumber() {
+        return page * pageSize + 1;
+    }
+
+    // The currentPage() method returns the tickets on
+    // the page being shown, in the listing's order.
+    public List<Ticket> currentPage() {
+        int from = page * pageSize;
+        fill(from + pageSize);
+        return Collections.unmodifiableList(rows.subList(from, Math.min(from + pageSize, rows.size())));
+    }
+
+    // The hasNextPage() method checks whether there
+    // are any tickets after the page being shown.
+    public boolean hasNextPage() {
+        int end = (page + 1) * pageSize;
+        fill(end + 1);
+        return rows.size() > end;
+    }
+
+    // The hasPreviousPage() method checks whether there
+    // is a page before the page being shown.
+    public boolean hasPreviousPage() {
+        return page > 0;
+    }
+
+    // The nextPage() method moves on to the next page, and
+    // returns false, staying put, if this is the last page.
+    public boolean nextPage() {
+        if (!hasNextPage()) {
+            return false;
+        }
+        page++;
+        return true;
+    }
+
+    // The previousPage() method moves back to the previous page, and
+    // returns false, staying put, if this is the first page.
+    public boolean previousPage() {
+        if (page == 0) {
+            return false;
+        }
+        page--;
+        return true;
+    }
+
+    // The getRow() method returns the ticket with a number shown on
+    // this page or an earlier one, or null if there is no such ticket.
+    public Ticket getRow(int rowNumber) {
+        int shown = Math.min(rows.size(), (page + 1) * pageSize);
+        if (rowNumber < 1 || rowNumber > shown) {
+            return null;
+        }
+        return rows.get(rowNumber - 1);
+    }
+
+    // The fill() method fetches tickets from the listing until
+    // there are at least count of them, or the listing runs out.
+    private void fill(int count) {
+        while (rows.size() < count && source.hasNext()) {
+            rows.add(source.next());
+        }
+    }
+}
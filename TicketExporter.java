@@ -0,0 +1,356 @@
+// The TicketExporter class is used to export tickets and users
+// to CSV or newline delimited JSON files, for auditors. Rows are
+// encoded straight into a reusable direct buffer which is written
+// out through a FileChannel whenever it fills up, so exports
+// stream through the tickets without building any lists or
+// formatting any intermediate strings.
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.UUID;
+
+public class TicketExporter {
+    // The Format enum is used to choose
+    // the file format of an export, either
+    // CSV or newline delimited JSON
+    enum Format {
+        CSV,
+        JSON
+    }
+
+    // The size of the direct buffer rows are encoded into.
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // The largest number of bytes a single character can
+    // take once encoded, so the buffer is flushed before
+    // it could overflow.
+    private static final int MAX_CHAR_BYTES = 6;
+
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes();
+
+    private static final String[] TICKET_COLUMNS = { "id", "created", "completed", "severity", "status",
+            "archived", "technician", "createdBy", "description" };
+    private static final String[] USER_COLUMNS = { "email", "firstName", "lastName", "phoneNumber",
+            "technician" };
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private FileChannel channel;
+    private Format format;
+    private int column;
+
+    // The exportTickets() method writes every ticket on the service
+    // desk which matches the query to the file, and returns the
+    // number of tickets written.
+    public long exportTickets(Path file, Format format, TicketQuery query, ServiceDesk serviceDesk)
+            throws IOException {
+        long written = 0;
+        open(file, format);
+        try {
+            writeHeader(TICKET_COLUMNS);
+            for (Ticket ticket : serviceDesk.query(query)) {
+                writeTicket(ticket);
+                written++;
+            }
+            flush();
+        } catch (ExportFailedException e) {
+            throw e.getCause();
+        } finally {
+            close();
+        }
+        return written;
+    }
+
+    // The exportUsers() method writes every user to the file,
+    // leaving out their passwords, and returns the number of
+    // users written.
+    public long exportUsers(Path file, Format format, Iterable<User> users) throws IOException {
+        long written = 0;
+        open(file, format);
+        try {
+            writeHeader(USER_COLUMNS);
+            for (User user : users) {
+                startRow();
+                writeString(USER_COLUMNS[0], user.getEmail());
+                writeString(USER_COLUMNS[1], user.getFirstName());
+                writeString(USER_COLUMNS[2], user.getLastName());
+                writeString(USER_COLUMNS[3], user.getPhoneNumber());
+                writeBoolean(USER_COLUMNS[4], user.getIsTechnician());
+                endRow();
+                written++;
+            }
+            flush();
+        } catch (ExportFailedException e) {
+            throw e.getCause();
+        } finally {
+            close();
+        }
+        return written;
+    }
+
+    // The writeTicket() method encodes a single ticket as a row.
+    private void writeTicket(Ticket ticket) {
+        startRow();
+        writeUUID(TICKET_COLUMNS[0], ticket.getUUID());
+        writeDate(TICKET_COLUMNS[1], ticket.getDateCreated());
+        writeDate(TICKET_COLUMNS[2], ticket.getDateCompleted());
+        writeString(TICKET_COLUMNS[3], ticket.getSeverity() == null ? null : ticket.getSeverity().name());
+        writeString(TICKET_COLUMNS[4], ticket.getTicketStatus().name());
+        writeBoolean(TICKET_COLUMNS[5], ticket.getIsArchived());
+        User technician = ticket.getAssignedTechnician();
+        writeString(TICKET_COLUMNS[6], technician == null ? null : technician.getEmail());
+        writeString(TICKET_COLUMNS[7], ticket.getCreatedBy().getEmail());
+        writeString(TICKET_COLUMNS[8], ticket.getDescription());
+        endRow();
+    }
+
+    private void open(Path file, Format format) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.format = format;
+        this.buffer.clear();
+    }
+
+    private void close() throws IOException {
+        channel.close();
+        channel = null;
+    }
+
+    // The writeHeader() method writes the column names as the
+    // first line of a CSV file. JSON rows name their own fields,
+    // so they do not have a header.
+    private void writeHeader(String[] columns) {
+        if (format != Format.CSV) {
+            return;
+        }
+        startRow();
+        for (String column : columns) {
+            separate();
+            writeAscii(column);
+        }
+        endRow();
+    }
+
+    private void startRow() {
+        column = 0;
+        if (format == Format.JSON) {
+            put((byte) '{');
+        }
+    }
+
+    private void endRow() {
+        if (format == Format.JSON) {
+            put((byte) '}');
+        }
+        put((byte) '\n');
+    }
+
+    // The separate() method writes the separator that
+    // goes before every value except the first in a row.
+    private void separate() {
+        if (column++ > 0) {
+            put((byte) ',');
+        }
+    }
+
+    // The startValue() method writes everything that comes
+    // before a value, which for JSON is its field name.
+    private void startValue(String name) {
+        separate();
+        if (format == Format.JSON) {
+            put((byte) '"');
+            writeAscii(name);
+            put((byte) '"');
+            put((byte) ':');
+        }
+    }
+
+    private void writeString(String name, String value) {
+        startValue(name);
+        if (value == null) {
+            if (format == Format.JSON) {
+                writeAscii("null");
+            }
+            return;
+        }
+        put((byte) '"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (format == Format.CSV) {
+                // Quotes inside a quoted CSV value are doubled up
+                if (c == '"') {
+                    put((byte) '"');
+                }
+                writeChar(value, i, c);
+            } else if (c == '"' || c == '\\') {
+                put((byte) '\\');
+                put((byte) c);
+            } else if (c == '\n') {
+                writeAscii("\\n");
+            } else if (c == '\r') {
+                writeAscii("\\r");
+            } else if (c == '\t') {
+                writeAscii("\\t");
+            } else if (c < 0x20) {
+                writeAscii("\\u00");
+                put(HEX_DIGITS[c >> 4]);
+                put(HEX_DIGITS[c & 0xF]);
+            } else {
+                writeChar(value, i, c);
+            }
+            if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                i++;
+            }
+        }
+        put((byte) '"');
+    }
+
+    private void writeBoolean(String name, boolean value) {
+        startValue(name);
+        writeAscii(value ? "true" : "false");
+    }
+
+    // The writeDate() method writes a date as yyyy-MM-dd,
+    // one digit at a time.
+    private void writeDate(String name, LocalDate date) {
+        if (date == null) {
+            writeString(name, null);
+            return;
+        }
+        startValue(name);
+        if (format == Format.JSON) {
+            put((byte) '"');
+        }
+        writeDigits(date.getYear(), 4);
+        put((byte) '-');
+        writeDigits(date.getMonthValue(), 2);
+        put((byte) '-');
+        writeDigits(date.getDayOfMonth(), 2);
+        if (format == Format.JSON) {
+            put((byte) '"');
+        }
+    }
+
+    // The writeUUID() method writes a UUID in its usual
+    // 8-4-4-4-12 form, straight from its two halves.
+    private void writeUUID(String name, UUID uuid) {
+        startValue(name);
+        if (format == Format.JSON) {
+            put((byte) '"');
+        }
+        long high = uuid.getMostSignificantBits();
+        long low = uuid.getLeastSignificantBits();
+        writeHex(high >>> 32, 8);
+        put((byte) '-');
+        writeHex(high >>> 16, 4);
+        put((byte) '-');
+        writeHex(high, 4);
+        put((byte) '-');
+        writeHex(low >>> 48, 4);
+        put((byte) '-');
+        writeHex(low, 12);
+        if (format == Format.JSON) {
+            put((byte) '"');
+        }
+    }
+
+    private void writeHex(long value, int digits) {
+        for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4) {
+            put(HEX_DIGITS[(int) (value >>> shift) & 0xF]);
+        }
+    }
+
+    private void writeDigits(int value, int digits) {
+        if (value < 0) {
+            put((byte) '-');
+            value = -value;
+        }
+        int divisor = 1;
+        for (int i = 1; i < digits || divisor * 10L <= value; i++) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            put((byte) ('0' + (value / divisor) % 10));
+        }
+    }
+
+    private void writeAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            put((byte) text.charAt(i));
+        }
+    }
+
+    // The writeChar() method encodes a single character as UTF-8,
+    // combining it with the next character if they are a
+    // surrogate pair.
+    private void writeChar(String value, int index, char c) {
+        if (c < 0x80) {
+            put((byte) c);
+            return;
+        }
+        ensureRoom(MAX_CHAR_BYTES);
+        if (c < 0x800) {
+            buffer.put((byte) (0xC0 | (c >> 6)));
+            buffer.put((byte) (0x80 | (c & 0x3F)));
+        } else if (Character.isHighSurrogate(c) && index + 1 < value.length()
+                && Character.isLowSurrogate(value.charAt(index + 1))) {
+            int codePoint = Character.toCodePoint(c, value.charAt(index + 1));
+            buffer.put((byte) (0xF0 | (codePoint >> 18)));
+            buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+            buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+            buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+        } else if (Character.isSurrogate(c)) {
+            // An unpaired surrogate can't be encoded
+            buffer.put((byte) '?');
+        } else {
+            buffer.put((byte) (0xE0 | (c >> 12)));
+            buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+            buffer.put((byte) (0x80 | (c & 0x3F)));
+        }
+    }
+
+    private void put(byte b) {
+        ensureRoom(1);
+        buffer.put(b);
+    }
+
+    private void ensureRoom(int bytes) {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    // The flush() method writes everything in the buffer
+    // out to the file, and empties the buffer.
+    private void flush() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new ExportFailedException(e);
+        }
+        buffer.clear();
+    }
+
+    // The ExportFailedException class is used to carry an
+    // IOException out of the encoding methods, so it can be
+    // rethrown as an IOException by the export methods.
+    private static class ExportFailedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        ExportFailedException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+}
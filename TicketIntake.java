@@ -0,0 +1,212 @@
+// The TicketIntake class takes newly created tickets off the
+// submitter's hands. Tickets are put on a bounded queue, and the
+// submitter is told straight away whether the ticket was accepted,
+// while an assignment worker takes tickets off the queue in batches
+// and assigns each batch in one go. When the queue is full the
+// ticket is either turned away at once, or the submitter waits a
+// short, fixed time for room, depending on the admission policy.
+//
+// The worker only runs while there are tickets waiting, and gives
+// up its thread after a few batches, so one executor can be shared
+// by the intakes of many service desks, without a busy desk keeping
+// the others waiting. When the intake is stopped, the tickets still
+// waiting are assigned by the thread stopping it, so none are lost.
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class TicketIntake {
+    // The Admission enum is used to tell
+    // a submitter what happened to their ticket,
+    // either Accepted straight away, Deferred
+    // until there was room, or Rejected
+    enum Admission {
+        Accepted,
+        Deferred,
+        Rejected
+    }
+
+    // The Policy enum is used to choose
+    // what happens when the queue is full,
+    // either Reject the ticket, or Defer
+    // it until there is room
+    enum Policy {
+        Reject,
+        Defer
+    }
+
+    private final ServiceDesk serviceDesk;
+    private final BlockingQueue<Ticket> queue;
+    private final Policy policy;
+    private final Duration deferTimeout;
+    private final int maxBatch;
+
+    // The most batches the worker assigns before giving
+    // its thread back to the executor.
+    private static final int BATCHES_PER_TURN = 4;
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong deferred = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile boolean running;
+    private volatile Executor executor;
+
+    // Set while the worker is waiting to run, or running.
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    // Held while tickets are being assigned, so stop() can wait
+    // for a batch the worker is part way through.
+    private final ReentrantLock assigning = new ReentrantLock();
+
+    // The TicketIntake() method is the constructor for the
+    // TicketIntake class, using the default settings.
+    public TicketIntake(ServiceDesk serviceDesk) {
+        this(serviceDesk, 10000, Policy.Defer, Duration.ofMillis(250), 256);
+    }
+
+    // This version of TicketIntake() lets every setting be chosen.
+    public TicketIntake(ServiceDesk serviceDesk, int capacity, Policy policy, Duration deferTimeout, int maxBatch) {
+        this.serviceDesk = serviceDesk;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.policy = policy;
+        this.deferTimeout = deferTimeout;
+        this.maxBatch = maxBatch;
+    }
+
+    // The start() method starts running the assignment worker on
+    // the given executor, whenever there are tickets waiting.
+    public synchronized void start(Executor executor) {
+        if (!running) {
+            this.executor = executor;
+            running = true;
+            schedule();
+        }
+    }
+
+    // The stop() method stops the assignment worker, and returns
+    // once every ticket already on the queue has been assigned.
+    // It waits for any batch the worker is assigning, and then
+    // assigns whatever is left itself.
+    public synchronized void stop() {
+        running = false;
+        executor = null;
+        assigning.lock();
+        try {
+            List<Ticket> batch = new ArrayList<>(maxBatch);
+            while (queue.drainTo(batch, maxBatch) > 0) {
+                assign(batch);
+            }
+        } finally {
+            assigning.unlock();
+        }
+    }
+
+    // The submit() method puts a ticket on the queue to be
+    // assigned, and returns straight away with whether the ticket
+    // was admitted. It never waits for the ticket to be assigned.
+    public Admission submit(Ticket ticket) {
+        if (queue.offer(ticket)) {
+            accepted.incrementAndGet();
+            if (running) {
+                schedule();
+            }
+            return Admission.Accepted;
+        }
+        if (policy == Policy.Defer) {
+            try {
+                if (queue.offer(ticket, deferTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                    deferred.incrementAndGet();
+                    if (running) {
+                        schedule();
+                    }
+                    return Admission.Deferred;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        rejected.incrementAndGet();
+        return Admission.Rejected;
+    }
+
+    // The getPending() method returns the number of tickets
+    // waiting on the queue to be assigned.
+    public int getPending() {
+        return queue.size();
+    }
+
+    // The getAccepted() method is a getter method, for the
+    // number of tickets admitted straight away.
+    public long getAccepted() {
+        return accepted.get();
+    }
+
+    // The getDeferred() method is a getter method, for the
+    // number of tickets admitted after waiting for room.
+    public long getDeferred() {
+        return deferred.get();
+    }
+
+    // The getRejected() method is a getter method, for the
+    // number of tickets turned away because the queue was full.
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    // The schedule() method hands the assignment worker to the
+    // executor, unless it is already waiting to run, or running.
+    private void schedule() {
+        Executor current = executor;
+        if (current != null && !queue.isEmpty() && scheduled.compareAndSet(false, true)) {
+            try {
+                current.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // The executor has been shut down
+                scheduled.set(false);
+            }
+        }
+    }
+
+    // The drain() method is the assignment worker. It takes up to a
+    // batch of waiting tickets at a time, and assigns each batch in a
+    // single pass. After a few batches it gives up its thread, and
+    // hands itself back to the executor if there are still tickets
+    // waiting, behind any other work already queued there.
+    private void drain() {
+        List<Ticket> batch = new ArrayList<>(maxBatch);
+        assigning.lock();
+        try {
+            for (int turn = 0; turn < BATCHES_PER_TURN && queue.drainTo(batch, maxBatch) > 0; turn++) {
+                assign(batch);
+            }
+        } finally {
+            assigning.unlock();
+            // Checked again after clearing the flag, so a ticket
+            // submitted in between is never left waiting
+            scheduled.set(false);
+            if (!queue.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+
+    // The assign() method assigns a batch of tickets taken off
+    // the queue, and empties the batch ready for the next.
+    private void assign(List<Ticket> batch) {
+        try {
+            serviceDesk.assignTickets(batch);
+        } catch (RuntimeException e) {
+            System.err.println("Ticket assignment failed: " + e);
+        } finally {
+            batch.clear();
+        }
+    }
+}
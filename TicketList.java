@@ -0,0 +1,111 @@
+// The TicketList class is used to store a user's tickets. Every
+// change publishes a new immutable Snapshot of the list, so anyone
+// reading the tickets (such as a long report) keeps a consistent
+// view of them, while tickets keep being added and removed. Adding
+// a ticket writes into spare room at the end of the shared array,
+// past the end of every earlier snapshot, so only removals need
+// to copy the array.
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+import java.util.function.Predicate;
+
+public class TicketList {
+    private static final Ticket[] NO_TICKETS = new Ticket[0];
+    private static final int INITIAL_CAPACITY = 4;
+
+    private volatile Snapshot current = new Snapshot(NO_TICKETS, 0);
+
+    // The Snapshot class is an immutable view of the tickets
+    // in a TicketList at the moment it was taken.
+    static final class Snapshot extends AbstractList<Ticket> implements RandomAccess {
+        private final Ticket[] tickets;
+        private final int size;
+
+        private Snapshot(Ticket[] tickets, int size) {
+            this.tickets = tickets;
+            this.size = size;
+        }
+
+        @Override
+        public Ticket get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return tickets[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    // The snapshot() method returns the tickets as they are
+    // right now. The snapshot never changes afterwards.
+    public Snapshot snapshot() {
+        return current;
+    }
+
+    // The size() method returns the number of tickets
+    // currently in the list.
+    public int size() {
+        return current.size;
+    }
+
+    // The add() method adds a ticket to the end of the list.
+    public synchronized void add(Ticket ticket) {
+        Snapshot before = current;
+        Ticket[] tickets = ensureCapacity(before, before.size + 1);
+        tickets[before.size] = ticket;
+        current = new Snapshot(tickets, before.size + 1);
+    }
+
+    // The addAll() method adds a batch of tickets to the end
+    // of the list, publishing them all at once.
+    public synchronized void addAll(Collection<Ticket> toAdd) {
+        if (toAdd.isEmpty()) {
+            return;
+        }
+        Snapshot before = current;
+        Ticket[] tickets = ensureCapacity(before, before.size + toAdd.size());
+        int size = before.size;
+        for (Ticket ticket : toAdd) {
+            tickets[size++] = ticket;
+        }
+        current = new Snapshot(tickets, size);
+    }
+
+    // The removeIf() method removes every ticket matching the
+    // filter, in a single copy of the list. It returns true if
+    // any tickets were removed.
+    public synchronized boolean removeIf(Predicate<Ticket> filter) {
+        Snapshot before = current;
+        Ticket[] kept = new Ticket[Math.max(INITIAL_CAPACITY, before.size)];
+        int size = 0;
+        for (int i = 0; i < before.size; i++) {
+            if (!filter.test(before.tickets[i])) {
+                kept[size++] = before.tickets[i];
+            }
+        }
+        if (size == before.size) {
+            return false;
+        }
+        current = new Snapshot(kept, size);
+        return true;
+    }
+
+    // The ensureCapacity() method returns an array with room for
+    // the given number of tickets. The snapshot's own array is
+    // reused when it has room, as the slots past its end are not
+    // visible to it, or to any earlier snapshot.
+    private static Ticket[] ensureCapacity(Snapshot snapshot, int needed) {
+        if (needed <= snapshot.tickets.length) {
+            return snapshot.tickets;
+        }
+        int capacity = Math.max(INITIAL_CAPACITY, snapshot.tickets.length * 2);
+        return Arrays.copyOf(snapshot.tickets, Math.max(capacity, needed));
+    }
+}
@@ -0,0 +1,30 @@
+// The TicketListener interface is used by classes which need
+// to be told whenever a ticket changes, so they can keep their
+// own views of the tickets up to date without having to walk
+// through every ticket again.
+
+public interface TicketListener {
+    // The ticketStatusChanged() method is called after a
+    // ticket's status has been changed to a different status.
+    default void ticketStatusChanged(Ticket ticket, Ticket.TicketStatus oldStatus,
+            Ticket.TicketStatus newStatus) {
+    }
+
+    // The ticketSeverityChanged() method is called after a
+    // ticket's severity has been changed to a different severity.
+    default void ticketSeverityChanged(Ticket ticket, Ticket.Severity oldSeverity, Ticket.Severity newSeverity) {
+    }
+
+    // The ticketAssigned() method is called after a ticket has been
+    // given to a technician. The old technician is null if the
+    // ticket had not been assigned before.
+    default void ticketAssigned(Ticket ticket, User oldTechnician, User newTechnician) {
+    }
+
+    // The ticketStateChanged() method is called whenever any part of
+    // a ticket's State is replaced. It is called while the ticket is
+    // locked, so it sees every change in order, and must be quick
+    // and must not change the ticket itself.
+    default void ticketStateChanged(Ticket ticket, Ticket.State oldState, Ticket.State newState) {
+    }
+}
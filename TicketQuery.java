@@ -0,0 +1,415 @@
+// The TicketQuery class describes which tickets a screen wants to
+// see, and in what order. A query is never modified, instead each
+// of its with methods returns a new query with one more condition,
+// so queries can be built up a piece at a time and shared.
+//
+// When a query is run, a small planner looks at which conditions
+// were given and picks the smallest list of tickets which is sure
+// to hold every match: a technician's open queue, a technician's
+// tickets, the tickets someone submitted, a tier's tickets, or as a
+// last resort every ticket. Every condition is then checked in a
+// single pass over that list, one ticket at a time, so tickets are
+// only ever copied into a list when they have to be sorted.
+//
+// Those lists are the only indexes the planner has. Apart from a
+// technician's open tickets, which their open queue holds, the
+// status, severity and date range conditions never narrow down
+// which list is read, and are only checked during the pass.
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+public class TicketQuery {
+    // The Order enum is used to choose the order
+    // tickets are returned in.
+    enum Order {
+        // Whatever order the tickets are found in, which is fastest
+        None,
+        // Most severe first, and oldest first within a severity
+        MostUrgent,
+        Oldest,
+        Newest,
+        // Most recently marked completed first, then
+        // tickets which have never been completed
+        RecentlyCompleted
+    }
+
+    // The Source enum lists the lists of tickets
+    // the planner can choose to read from.
+    enum Source {
+        OpenQueue,
+        Technician,
+        Creator,
+        Tier,
+        All
+    }
+
+    private static final TicketQuery ALL_TICKETS = new TicketQuery(null, null, null, null, null, null, null,
+            null, Order.None, Integer.MAX_VALUE);
+
+    private static final Comparator<Ticket> MOST_URGENT = Comparator
+            .comparingInt((Ticket t) -> t.getSeverity() == null ? -1 : t.getSeverity().ordinal()).reversed()
+            .thenComparingLong(Ticket::getSequence);
+    private static final Comparator<Ticket> OLDEST = Comparator.comparingLong(Ticket::getSequence);
+    private static final Comparator<Ticket> RECENTLY_COMPLETED = Comparator
+            .comparing(Ticket::getTimeMarkedCompleted, Comparator.nullsLast(Comparator.<Instant>reverseOrder()))
+            .thenComparing(OLDEST.reversed());
+
+    // Any of these may be null, in which case
+    // that part of a ticket is not checked.
+    private final EnumSet<Ticket.TicketStatus> statuses;
+    private final EnumSet<Ticket.Severity> severities;
+    private final Boolean archived;
+    private final ServiceDesk.Tier tier;
+    private final User technician, creator;
+    private final LocalDate createdFrom, createdTo;
+    private final Order order;
+    private final int limit;
+
+    private TicketQuery(EnumSet<Ticket.TicketStatus> statuses, EnumSet<Ticket.Severity> severities,
+            Boolean archived, ServiceDesk.Tier tier, User technician, User creator, LocalDate createdFrom,
+            LocalDate createdTo, Order order, int limit) {
+        this.statuses = statuses;
+        this.severities = severities;
+        this.archived = archived;
+        this.tier = tier;
+        this.technician = technician;
+        this.creator = creator;
+        this.createdFrom = createdFrom;
+        this.createdTo = createdTo;
+        this.order = order;
+        this.limit = limit;
+    }
+
+    // The allTickets() method returns a query for every
+    // ticket, which can then be narrowed down.
+    static TicketQuery allTickets() {
+        return ALL_TICKETS;
+    }
+
+    // The withStatus() method returns a query for the tickets
+    // which have any of the given statuses.
+    TicketQuery withStatus(Ticket.TicketStatus first, Ticket.TicketStatus... rest) {
+        return new TicketQuery(EnumSet.of(first, rest), severities, archived, tier, technician, creator,
+                createdFrom, createdTo, order, limit);
+    }
+
+    // The withSeverity() method returns a query for the tickets
+    // which have any of the given severities.
+    TicketQuery withSeverity(Ticket.Severity first, Ticket.Severity... rest) {
+        return new TicketQuery(statuses, EnumSet.of(first, rest), archived, tier, technician, creator,
+                createdFrom, createdTo, order, limit);
+    }
+
+    // The withArchived() method returns a query for the tickets
+    // which are, or are not, archived.
+    TicketQuery withArchived(boolean archived) {
+        return new TicketQuery(statuses, severities, archived, tier, technician, creator, createdFrom, createdTo,
+                order, limit);
+    }
+
+    // The withOpen() method returns a query for the tickets
+    // which are still being worked on, which are those that
+    // are open and not archived.
+    TicketQuery withOpen() {
+        return withStatus(Ticket.TicketStatus.Open).withArchived(false);
+    }
+
+    // The withClosed() method returns a query for the tickets
+    // which have been completed, whether or not they are archived.
+    TicketQuery withClosed() {
+        return withStatus(Ticket.TicketStatus.CompletedResolved, Ticket.TicketStatus.CompletedUnresolved);
+    }
+
+    // The withTier() method returns a query for the tickets
+    // held by the technicians of a tier.
+    TicketQuery withTier(ServiceDesk.Tier tier) {
+        return new TicketQuery(statuses, severities, archived, tier, technician, creator, createdFrom, createdTo,
+                order, limit);
+    }
+
+    // The withTechnician() method returns a query for the
+    // tickets assigned to a technician.
+    TicketQuery withTechnician(User technician) {
+        return new TicketQuery(statuses, severities, archived, tier, technician, creator, createdFrom, createdTo,
+                order, limit);
+    }
+
+    // The withCreator() method returns a query for the
+    // tickets submitted by a user.
+    TicketQuery withCreator(User creator) {
+        return new TicketQuery(statuses, severities, archived, tier, technician, creator, createdFrom, createdTo,
+                order, limit);
+    }
+
+    // The withCreatedBetween() method returns a query for the tickets
+    // created between two dates (inclusive). Either date may be null,
+    // to leave that end of the range open.
+    TicketQuery withCreatedBetween(LocalDate createdFrom, LocalDate createdTo) {
+        return new TicketQuery(statuses, severities, archived, tier, technician, creator, createdFrom, createdTo,
+                order, limit);
+    }
+
+    // The withOrder() method returns a query which
+    // returns its tickets in the given order.
+    TicketQuery withOrder(Order order) {
+        return new TicketQuery(statuses, severities, archived, tier, technician, creator, createdFrom, createdTo,
+                order, limit);
+    }
+
+    // The withLimit() method returns a query which returns
+    // at most the given number of tickets.
+    TicketQuery withLimit(int limit) {
+        return new TicketQuery(statuses, severities, archived, tier, technician, creator, createdFrom, createdTo,
+                order, limit);
+    }
+
+    // The getTechnician() method is a getter method,
+    // for the technician being queried on.
+    User getTechnician() {
+        return this.technician;
+    }
+
+    // The matches() method checks whether a ticket passes every
+    // condition of the query, using the technician it is assigned
+    // to now. The ticket's state is read once, so it can't change
+    // part way through being checked.
+    boolean matches(Ticket ticket, DeskSnapshot snapshot) {
+        Ticket.State state = ticket.getState();
+        User assignee = state.assignedTechnician;
+        return matches(ticket, state, assignee, tier == null ? null : snapshot.tierOf(assignee));
+    }
+
+    // This version of matches() checks the technician and tier
+    // against the ones given, which for a ticket found in a
+    // technician's list in the snapshot are that technician's.
+    private boolean matches(Ticket ticket, Ticket.State state, User assignee, ServiceDesk.Tier assigneeTier) {
+        if (statuses != null && !statuses.contains(state.ticketStatus)) {
+            return false;
+        }
+        if (severities != null && (state.severity == null || !severities.contains(state.severity))) {
+            return false;
+        }
+        if (archived != null && state.archived != archived) {
+            return false;
+        }
+        if (technician != null && assignee != technician) {
+            return false;
+        }
+        if (creator != null && ticket.getCreatedBy() != creator) {
+            return false;
+        }
+        LocalDate created = ticket.getDateCreated();
+        if (createdFrom != null && created.isBefore(createdFrom)) {
+            return false;
+        }
+        if (createdTo != null && created.isAfter(createdTo)) {
+            return false;
+        }
+        return tier == null || assigneeTier == tier;
+    }
+
+    // The plan() method picks the list of tickets the query will
+    // read from, which is whichever of the lists its conditions
+    // allow that holds the fewest tickets.
+    Source plan(DeskSnapshot snapshot) {
+        Source best = Source.All;
+        long bestSize = Long.MAX_VALUE;
+        if (technician != null && isOnlyOpen()) {
+            best = Source.OpenQueue;
+            bestSize = technician.getOpenQueue().size();
+        }
+        if (technician != null) {
+            List<Ticket> tickets = snapshot.getTickets(technician);
+            long size = tickets != null ? tickets.size() : technician.getTicketList().size();
+            if (size < bestSize) {
+                best = Source.Technician;
+                bestSize = size;
+            }
+        }
+        if (creator != null) {
+            long size = creator.getSubmittedList().size();
+            if (size < bestSize) {
+                best = Source.Creator;
+                bestSize = size;
+            }
+        }
+        if (tier != null && snapshot.countTickets(tier) < bestSize) {
+            best = Source.Tier;
+        }
+        return best;
+    }
+
+    // The run() method returns the tickets in the snapshot which
+    // match the query. Unless they need to be sorted, the tickets
+    // are found one at a time as they are iterated over, and
+    // nothing is read past the limit.
+    Iterable<Ticket> run(DeskSnapshot snapshot) {
+        return () -> {
+            Source source = plan(snapshot);
+            // The open queue is already in the most urgent order
+            if (order == Order.None || (order == Order.MostUrgent && source == Source.OpenQueue)) {
+                return new Matches(snapshot, source);
+            }
+            return sorted(snapshot, source).iterator();
+        };
+    }
+
+    // The isOnlyOpen() method checks whether the query can only
+    // match tickets which are kept in a technician's open queue.
+    private boolean isOnlyOpen() {
+        return statuses != null && statuses.equals(EnumSet.of(Ticket.TicketStatus.Open))
+                && Boolean.FALSE.equals(archived);
+    }
+
+    // The sorted() method finds the matching tickets in order. When
+    // there is a limit, only the best tickets seen so far are kept,
+    // in a heap no bigger than the limit.
+    private List<Ticket> sorted(DeskSnapshot snapshot, Source source) {
+        Comparator<Ticket> comparator = order == Order.MostUrgent ? MOST_URGENT
+                : order == Order.Oldest ? OLDEST
+                : order == Order.RecentlyCompleted ? RECENTLY_COMPLETED : OLDEST.reversed();
+        Iterator<Ticket> matches = new Matches(snapshot, source, Integer.MAX_VALUE);
+        List<Ticket> sorted = new ArrayList<>();
+        if (limit == Integer.MAX_VALUE) {
+            matches.forEachRemaining(sorted::add);
+        } else if (limit > 0) {
+            // The worst of the best tickets is at the top of the heap
+            PriorityQueue<Ticket> best = new PriorityQueue<>(Math.min(limit, 1024), comparator.reversed());
+            while (matches.hasNext()) {
+                Ticket ticket = matches.next();
+                if (best.size() < limit) {
+                    best.add(ticket);
+                } else if (comparator.compare(ticket, best.peek()) < 0) {
+                    best.poll();
+                    best.add(ticket);
+                }
+            }
+            sorted.addAll(best);
+        }
+        Collections.sort(sorted, comparator);
+        return sorted;
+    }
+
+    // The Matches class walks through the lists of tickets a source
+    // covers, returning each matching ticket as it is found. The
+    // technicians' lists are taken from the snapshot, and who each
+    // ticket was assigned to is worked out from the list it is in,
+    // so moving a ticket after the snapshot was taken can't make it
+    // go missing. The open queue, and the list of tickets a user
+    // submitted, are read as they are now instead, as the snapshot
+    // only holds the technicians' lists.
+    private final class Matches implements Iterator<Ticket> {
+        private final DeskSnapshot snapshot;
+        private final List<List<Ticket>> lists = new ArrayList<>();
+        // The technician each list belongs to and their tier, or
+        // null if the list isn't a technician's list
+        private final List<User> owners = new ArrayList<>();
+        private final List<ServiceDesk.Tier> ownerTiers = new ArrayList<>();
+        private final int limit;
+        private int listIndex, position, returned;
+        private Ticket next;
+
+        private Matches(DeskSnapshot snapshot, Source source) {
+            this(snapshot, source, TicketQuery.this.limit);
+        }
+
+        private Matches(DeskSnapshot snapshot, Source source, int limit) {
+            this.snapshot = snapshot;
+            this.limit = limit;
+            switch (source) {
+                case OpenQueue:
+                    // The queue can only be read while it is locked, so
+                    // the matches are taken from it in a single walk
+                    lists.add(technician.getOpenQueue().top(limit, t -> matches(t, snapshot)));
+                    owners.add(null);
+                    ownerTiers.add(null);
+                    break;
+                case Technician:
+                    // A technician who has left the desk is not in
+                    // the snapshot, so their own list is read
+                    List<Ticket> tickets = snapshot.getTickets(technician);
+                    lists.add(tickets != null ? tickets : technician.getTickets());
+                    owners.add(technician);
+                    ownerTiers.add(snapshot.tierOf(technician));
+                    break;
+                case Creator:
+                    lists.add(creator.getSubmittedTickets());
+                    owners.add(null);
+                    ownerTiers.add(null);
+                    break;
+                case Tier:
+                    addTier(tier);
+                    break;
+                case All:
+                    for (ServiceDesk.Tier each : ServiceDesk.Tier.values()) {
+                        addTier(each);
+                    }
+                    break;
+            }
+        }
+
+        private void addTier(ServiceDesk.Tier tier) {
+            User[] technicians = snapshot.getTechnicians(tier);
+            for (int i = 0; i < technicians.length; i++) {
+                lists.add(snapshot.getTickets(tier, i));
+                owners.add(technicians[i]);
+                ownerTiers.add(tier);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next != null) {
+                return true;
+            }
+            if (returned >= limit) {
+                return false;
+            }
+            while (listIndex < lists.size()) {
+                List<Ticket> list = lists.get(listIndex);
+                User owner = owners.get(listIndex);
+                while (position < list.size()) {
+                    Ticket ticket = list.get(position++);
+                    boolean found = owner == null ? matches(ticket, snapshot)
+                            : matches(ticket, ticket.getState(), owner, ownerTiers.get(listIndex));
+                    if (found) {
+                        next = ticket;
+                        return true;
+                    }
+                }
+                listIndex++;
+                position = 0;
+            }
+            return false;
+        }
+
+        @Override
+        public Ticket next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Ticket ticket = next;
+            next = null;
+            returned++;
+            return ticket;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TicketQuery[statuses=" + statuses + ", severities=" + severities + ", archived=" + archived
+                + ", tier=" + tier + ", technician=" + (technician == null ? null : technician.getEmail())
+                + ", creator=" + (creator == null ? null : creator.getEmail()) + ", created="
+                + createdFrom + ".." + createdTo + ", order=" + order + ", limit="
+                + (limit == Integer.MAX_VALUE ? "none" : Integer.toString(limit)) + "]";
+    }
+}
@@ -0,0 +1,193 @@
+// The TicketQueue class holds a technician's open tickets in the
+// order they should be worked on, most severe first, and oldest
+// first within a severity. It is a binary heap which remembers
+// where each ticket is in the heap, so tickets can be added,
+// removed, or moved when their severity changes, in O(log n), and
+// the most urgent tickets can be listed without sorting or copying
+// everything the technician holds.
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+public class TicketQueue {
+    private static final int INITIAL_CAPACITY = 8;
+    private static final Ticket[] NO_TICKETS = new Ticket[0];
+    private static final int[] NO_SEVERITIES = new int[0];
+    private static final long[] NO_SEQUENCES = new long[0];
+
+    // The heap, along with the key each ticket was placed with,
+    // so the heap stays in order even if a ticket changes before
+    // update() is called. Tickets created earlier have a lower
+    // sequence number, so it stands in for the creation time.
+    // Nothing is allocated until the first ticket is added, as
+    // most users never hold any open tickets.
+    private Ticket[] tickets = NO_TICKETS;
+    private int[] severities = NO_SEVERITIES;
+    private long[] sequences = NO_SEQUENCES;
+    private int size;
+
+    // The size() method returns the number of
+    // tickets in the queue.
+    public synchronized int size() {
+        return size;
+    }
+
+    // The contains() method checks whether a
+    // ticket is in this queue.
+    public synchronized boolean contains(Ticket ticket) {
+        int index = ticket.getQueueIndex();
+        return index >= 0 && index < size && tickets[index] == ticket;
+    }
+
+    // The add() method adds a ticket to the queue, unless
+    // it is already in it.
+    public synchronized void add(Ticket ticket) {
+        if (contains(ticket)) {
+            return;
+        }
+        if (size == tickets.length) {
+            int capacity = Math.max(INITIAL_CAPACITY, tickets.length * 2);
+            tickets = Arrays.copyOf(tickets, capacity);
+            severities = Arrays.copyOf(severities, capacity);
+            sequences = Arrays.copyOf(sequences, capacity);
+        }
+        place(size, ticket);
+        size++;
+        siftUp(size - 1);
+    }
+
+    // The remove() method takes a ticket out of the queue, and
+    // returns false if it wasn't in the queue.
+    public synchronized boolean remove(Ticket ticket) {
+        if (!contains(ticket)) {
+            return false;
+        }
+        int index = ticket.getQueueIndex();
+        ticket.setQueueIndex(-1);
+        size--;
+        if (index != size) {
+            place(index, tickets[size], severities[size], sequences[size]);
+            tickets[size] = null;
+            if (!siftUp(index)) {
+                siftDown(index);
+            }
+        } else {
+            tickets[size] = null;
+        }
+        return true;
+    }
+
+    // The update() method moves a ticket to its new place in the
+    // queue after its severity has changed.
+    public synchronized void update(Ticket ticket) {
+        if (!contains(ticket)) {
+            return;
+        }
+        int index = ticket.getQueueIndex();
+        place(index, ticket);
+        if (!siftUp(index)) {
+            siftDown(index);
+        }
+    }
+
+    // The top() method returns up to k of the most urgent tickets,
+    // in order. Only the part of the heap above the k-th ticket is
+    // looked at, so this takes O(k log k) however big the queue is.
+    public List<Ticket> top(int k) {
+        return top(k, ticket -> true);
+    }
+
+    // This version of top() only returns tickets which pass the
+    // filter, skipping over the rest without sorting them.
+    public synchronized List<Ticket> top(int k, Predicate<Ticket> filter) {
+        List<Ticket> top = new ArrayList<>(Math.min(k, size));
+        if (size == 0 || k <= 0) {
+            return top;
+        }
+        // The frontier holds heap positions whose parents have
+        // already been taken, so its best entry is the next ticket.
+        PriorityQueue<Integer> frontier = new PriorityQueue<>((a, b) -> compare(a, b));
+        frontier.add(0);
+        while (top.size() < k && !frontier.isEmpty()) {
+            int index = frontier.poll();
+            if (filter.test(tickets[index])) {
+                top.add(tickets[index]);
+            }
+            int child = 2 * index + 1;
+            if (child < size) {
+                frontier.add(child);
+            }
+            if (child + 1 < size) {
+                frontier.add(child + 1);
+            }
+        }
+        return top;
+    }
+
+    private void place(int index, Ticket ticket) {
+        Ticket.Severity severity = ticket.getSeverity();
+        place(index, ticket, severity == null ? -1 : severity.ordinal(), ticket.getSequence());
+    }
+
+    private void place(int index, Ticket ticket, int severity, long sequence) {
+        tickets[index] = ticket;
+        severities[index] = severity;
+        sequences[index] = sequence;
+        ticket.setQueueIndex(index);
+    }
+
+    // The compare() method returns a negative number if the ticket
+    // at position a should be worked on before the one at b.
+    private int compare(int a, int b) {
+        if (severities[a] != severities[b]) {
+            return Integer.compare(severities[b], severities[a]);
+        }
+        return Long.compare(sequences[a], sequences[b]);
+    }
+
+    private void swap(int a, int b) {
+        Ticket ticket = tickets[a];
+        int severity = severities[a];
+        long sequence = sequences[a];
+        place(a, tickets[b], severities[b], sequences[b]);
+        place(b, ticket, severity, sequence);
+    }
+
+    // The siftUp() method moves a ticket towards the top of the
+    // heap until it is in order, returning true if it moved.
+    private boolean siftUp(int index) {
+        boolean moved = false;
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (compare(index, parent) >= 0) {
+                break;
+            }
+            swap(index, parent);
+            index = parent;
+            moved = true;
+        }
+        return moved;
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int best = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < size && compare(left, best) < 0) {
+                best = left;
+            }
+            if (right < size && compare(right, best) < 0) {
+                best = right;
+            }
+            if (best == index) {
+                return;
+            }
+            swap(index, best);
+            index = best;
+        }
+    }
+}
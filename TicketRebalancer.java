@@ -0,0 +1,146 @@
+// The TicketRebalancer class runs in the background, watching how
+// many open tickets each technician has, and how long their oldest
+// untouched ticket has been waiting. When a technician falls too
+// far behind the others in their tier, a few of their untouched
+// tickets are moved to the least busy technician. A ticket which
+// has been moved is left alone for a while afterwards, and moving
+// only starts once the gap is large enough, so tickets don't get
+// passed back and forth between technicians.
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TicketRebalancer implements Runnable {
+    private final ServiceDesk serviceDesk;
+
+    // Tickets are only moved once the busiest technician has at
+    // least this many more open tickets than the least busy one.
+    private final int imbalanceThreshold;
+
+    // An idle technician will also take tickets from anyone whose
+    // oldest untouched ticket has been waiting at least this long.
+    private final Duration stallAge;
+
+    // A ticket is not moved again until this long after it was moved.
+    private final Duration cooldown;
+
+    // The most tickets moved from one technician in a single run.
+    private final int batchSize;
+
+    private final AtomicLong ticketsMoved = new AtomicLong();
+    private ScheduledFuture<?> scheduled;
+
+    // The TicketRebalancer() method is the constructor for the
+    // TicketRebalancer class, using the default settings.
+    public TicketRebalancer(ServiceDesk serviceDesk) {
+        this(serviceDesk, 3, Duration.ofMinutes(30), Duration.ofMinutes(15), 5);
+    }
+
+    // This version of TicketRebalancer() lets every setting be chosen.
+    public TicketRebalancer(ServiceDesk serviceDesk, int imbalanceThreshold, Duration stallAge,
+            Duration cooldown, int batchSize) {
+        this.serviceDesk = serviceDesk;
+        this.imbalanceThreshold = Math.max(2, imbalanceThreshold);
+        this.stallAge = stallAge;
+        this.cooldown = cooldown;
+        this.batchSize = batchSize;
+    }
+
+    // The start() method schedules the rebalancer to run
+    // regularly on the given scheduler.
+    public synchronized void start(ScheduledExecutorService scheduler, Duration period) {
+        if (scheduled == null) {
+            scheduled = scheduler.scheduleWithFixedDelay(this, period.toMillis(), period.toMillis(),
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // The stop() method stops the rebalancer from running again.
+    public synchronized void stop() {
+        if (scheduled != null) {
+            scheduled.cancel(false);
+            scheduled = null;
+        }
+    }
+
+    // The getTicketsMoved() method is a getter method, for
+    // the number of tickets the rebalancer has moved so far.
+    public long getTicketsMoved() {
+        return ticketsMoved.get();
+    }
+
+    // The run() method checks every tier once, moving tickets
+    // where a technician has fallen behind. Any problem is caught,
+    // so a single bad run doesn't stop the rebalancer for good.
+    @Override
+    public void run() {
+        try {
+            for (ServiceDesk.Tier tier : ServiceDesk.Tier.values()) {
+                rebalance(serviceDesk.getTechnicians(tier));
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Ticket rebalancing failed: " + e);
+        }
+    }
+
+    // The rebalance() method moves tickets within a single tier, from
+    // the busiest technician to the least busy one, until they are
+    // close enough or the batch is used up.
+    private void rebalance(User[] technicians) {
+        if (technicians.length < 2) {
+            return;
+        }
+        Instant now = Instant.now();
+        int[] loads = new int[technicians.length];
+        int busiest = 0, idlest = 0;
+        for (int i = 0; i < technicians.length; i++) {
+            // A technician's queue holds exactly their open tickets
+            loads[i] = technicians[i].getOpenQueue().size();
+            if (loads[i] > loads[busiest]) {
+                busiest = i;
+            }
+            if (loads[i] < loads[idlest]) {
+                idlest = i;
+            }
+        }
+        if (busiest == idlest || loads[busiest] - loads[idlest] < 2) {
+            return;
+        }
+
+        List<Ticket> candidates = new ArrayList<>();
+        for (Ticket ticket : technicians[busiest].getTickets()) {
+            if (ticket.getIsOpen() && !ticket.getIsArchived() && !ticket.getIsStarted()
+                    && !movedRecently(ticket, now)) {
+                candidates.add(ticket);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return;
+        }
+        // Oldest first, as they have been waiting the longest
+        candidates.sort(Comparator.comparing(Ticket::getTimeCreated));
+        boolean imbalanced = loads[busiest] - loads[idlest] >= imbalanceThreshold;
+        boolean stalled = loads[idlest] == 0 && loads[busiest] >= 2
+                && Duration.between(candidates.get(0).getTimeCreated(), now).compareTo(stallAge) >= 0;
+        if (!imbalanced && !stalled) {
+            return;
+        }
+
+        // Move just enough tickets to even the two technicians out
+        int toMove = Math.min(batchSize, Math.max(1, (loads[busiest] - loads[idlest]) / 2));
+        List<Ticket> batch = candidates.subList(0, Math.min(toMove, candidates.size()));
+        ticketsMoved.addAndGet(serviceDesk.transferTickets(batch, technicians[busiest], technicians[idlest]));
+    }
+
+    private boolean movedRecently(Ticket ticket, Instant now) {
+        Instant lastMoved = ticket.getTimeLastMoved();
+        return lastMoved != null && Duration.between(lastMoved, now).compareTo(cooldown) < 0;
+    }
+}
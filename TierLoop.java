@@ -0,0 +1,209 @@
+// The TierLoop class is the single thread which makes every change to
+// the tickets of one tier of technicians, when a service desk is run
+// partitioned. Changes are sent to it as commands through a lock-free
+// CommandRing, and it takes them off in batches and applies them one
+// after another. As only this thread ever changes the tier, the
+// technicians' lists are never fought over, and the tiers never wait
+// for each other. Once a batch has been applied, the loop publishes
+// it, so readers see the tier as it stood between batches.
+//
+// A change which spans tiers, such as moving a technician between
+// them, pauses every loop first, and makes the change while they
+// are all waiting.
+//
+// Once the loop has stopped, any command still left in the ring, or
+// sent afterwards, is never applied. Commands sent with call() have
+// their futures failed instead, so nothing waits on them forever.
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+public class TierLoop {
+    // The most commands applied before the tier is published.
+    private static final int BATCH_SIZE = 256;
+
+    // How long the loop waits before checking for commands again,
+    // in case a wake up was missed.
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final CommandRing<Runnable> commands;
+    private final Runnable publish;
+    private final Thread thread;
+
+    // Set while the loop is asleep, or about to be,
+    // so a producer knows to wake it.
+    private final AtomicBoolean sleeping = new AtomicBoolean();
+    private volatile boolean running = true;
+
+    // Set once the loop has applied its last command, after
+    // which anything sent to it is rejected.
+    private volatile boolean stopped;
+
+    // Counted down to let a paused loop carry on.
+    private CountDownLatch resumeLatch;
+
+    // The TierLoop() method is the constructor for the TierLoop
+    // class, and starts its thread. The publish action is run after
+    // every batch, on the loop's own thread.
+    public TierLoop(String name, int capacity, Runnable publish) {
+        this.commands = new CommandRing<>(capacity);
+        this.publish = publish;
+        this.thread = new DaemonThreadFactory(name).newThread(this::run);
+        this.thread.start();
+    }
+
+    // The execute() method sends a command to the loop. If the
+    // ring is full, it waits for the loop to make room.
+    public void execute(Runnable command) {
+        if (Thread.currentThread() == thread) {
+            // A command can't wait on its own loop
+            command.run();
+            return;
+        }
+        while (!commands.offer(command)) {
+            if (stopped) {
+                // Nothing will empty the ring now, so make room
+                rejectRemaining();
+            } else {
+                wake();
+                LockSupport.parkNanos(1000);
+            }
+        }
+        wake();
+        // The loop may have taken its last command before this
+        // one was added, in which case it is rejected here
+        if (stopped) {
+            rejectRemaining();
+        }
+    }
+
+    // The call() method sends a command which returns a
+    // result, which can be waited for with join(). If the loop
+    // stops before applying it, the future is failed with a
+    // RejectedExecutionException.
+    public <T> CompletableFuture<T> call(Supplier<T> command) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        execute(new Call<>(result, command));
+        return result;
+    }
+
+    // The pause() method waits until the loop has applied every
+    // command sent before it, and then holds the loop until resume()
+    // is called. Only one thread may have the loop paused at a time.
+    // It throws a CompletionException if the loop has stopped.
+    public void pause() {
+        CompletableFuture<Void> paused = new CompletableFuture<>();
+        CountDownLatch resume = new CountDownLatch(1);
+        resumeLatch = resume;
+        execute(new Call<>(paused, () -> {
+            paused.complete(null);
+            awaitUninterruptibly(resume);
+            return null;
+        }));
+        paused.join();
+    }
+
+    // The resume() method lets a paused loop carry on.
+    public void resume() {
+        resumeLatch.countDown();
+    }
+
+    // The stop() method stops the loop once it has applied
+    // every command already sent. Commands sent after that
+    // are rejected.
+    public void stop() {
+        running = false;
+        LockSupport.unpark(thread);
+    }
+
+    private void wake() {
+        if (sleeping.get() && sleeping.compareAndSet(true, false)) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void run() {
+        while (running || !commands.isEmpty()) {
+            int count = commands.drain(TierLoop::apply, BATCH_SIZE);
+            if (count > 0) {
+                publish.run();
+                continue;
+            }
+            // Say we are going to sleep, then check once more,
+            // so a command sent in between is never missed
+            sleeping.set(true);
+            if (commands.isEmpty() && running) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+            sleeping.set(false);
+        }
+        stopped = true;
+        rejectRemaining();
+    }
+
+    // The rejectRemaining() method empties the ring once the loop
+    // has stopped, failing the futures of any calls. It is
+    // synchronized, as any producer may run it, and the ring
+    // must only be emptied by one thread at a time.
+    private synchronized void rejectRemaining() {
+        while (commands.drain(TierLoop::reject, BATCH_SIZE) > 0) {
+            // Keep going until the ring is empty
+        }
+    }
+
+    private static void reject(Runnable command) {
+        if (command instanceof Call) {
+            ((Call<?>) command).result.completeExceptionally(
+                    new RejectedExecutionException("The tier's loop has stopped"));
+        }
+    }
+
+    private static void apply(Runnable command) {
+        try {
+            command.run();
+        } catch (RuntimeException e) {
+            System.err.println("A ticket change failed: " + e);
+        }
+    }
+
+    // The Call class is a command sent with call(), which
+    // completes its future with the command's result.
+    private static final class Call<T> implements Runnable {
+        private final CompletableFuture<T> result;
+        private final Supplier<T> command;
+
+        private Call(CompletableFuture<T> result, Supplier<T> command) {
+            this.result = result;
+            this.command = command;
+        }
+
+        @Override
+        public void run() {
+            try {
+                result.complete(command.get());
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,26 +1,44 @@
 // The user class is used to store a user's details, including
 // their email, first name, last name, phone number, password
-// and whether or not they are a technician.
+// hash and whether or not they are a technician.
 
 import java.util.ArrayList;
 import java.util.List;
 
 public class User {
-    private String email, firstName, lastName, phoneNumber, password;
+    private String email, firstName, lastName, phoneNumber;
     private boolean isTechnician;
 
-    // This will be the 'created' tickets of a staff member OR the 'assigned'
-    // tickets of a technician, as these two categories do not overlap.
-    private ArrayList<Ticket> tickets = new ArrayList<>();
+    // The user's password, as stored by a PasswordHasher. This is
+    // volatile, as it can be upgraded by a background thread
+    // after the user logs in.
+    private volatile String passwordHash;
+
+    // The tickets assigned to the user while they are a technician,
+    // and, kept apart from them, the tickets the user has submitted.
+    // A technician who is removed from the desk keeps their closed
+    // assigned tickets, but they never become tickets they submitted.
+    private final TicketList tickets = new TicketList();
+    private final TicketList submitted = new TicketList();
+
+    // A technician's open tickets, most urgent first. This is kept
+    // up to date by the service desk as tickets are assigned,
+    // reassigned and closed.
+    private final TicketQueue openQueue = new TicketQueue();
+
+    // The directory which holds the user's account, if this is the
+    // User it hands out, so any change to the user's details can
+    // be saved in their account.
+    private volatile UserDirectory directory;
 
     // The User() method, is the constructor for the User class.
-    public User(String email, String firstName, String lastName, String phoneNumber, String password,
+    public User(String email, String firstName, String lastName, String phoneNumber, String passwordHash,
             boolean isTechnician) {
         this.email = email;
         this.firstName = firstName;
         this.lastName = lastName;
         this.phoneNumber = phoneNumber;
-        this.password = password;
+        this.passwordHash = passwordHash;
         this.isTechnician = isTechnician;
     }
 
@@ -46,6 +64,7 @@ public class User {
     // for the user's first name.
     public void setFirstName(String firstName) {
         this.firstName = firstName;
+        save();
     }
 
     // The getLastName() method is a getter method,
@@ -58,6 +77,7 @@ public class User {
     // for the user's last name.
     public void setLastName(String lastName) {
         this.lastName = lastName;
+        save();
     }
 
     // The getPhoneNumber() method is a getter method,
@@ -70,18 +90,36 @@ public class User {
     // for the user's phone number.
     public void setPhoneNumber(String phoneNumber) {
         this.phoneNumber = phoneNumber;
+        save();
     }
 
-    // The getPassword() method is a getter method,
-    // for the user's email.
-    public String getPassword() {
-        return this.password;
+    // The getPasswordHash() method is a getter method,
+    // for the user's stored password hash.
+    public String getPasswordHash() {
+        return this.passwordHash;
     }
 
-    // The setPassword() method is a setter method,
-    // for the user's email.
-    public void setPassword(String password) {
-        this.password = password;
+    // The setPasswordHash() method is a setter method,
+    // for the user's stored password hash.
+    public void setPasswordHash(String passwordHash) {
+        synchronized (this) {
+            this.passwordHash = passwordHash;
+        }
+        save();
+    }
+
+    // The replacePasswordHash() method changes the user's password
+    // hash only if it is still the one expected, so an upgraded hash
+    // never overwrites a password the user has just changed.
+    public boolean replacePasswordHash(String expected, String passwordHash) {
+        synchronized (this) {
+            if (this.passwordHash != expected) {
+                return false;
+            }
+            this.passwordHash = passwordHash;
+        }
+        save();
+        return true;
     }
 
     // The getIsTechnician() method is a getter method,
@@ -94,12 +132,55 @@ public class User {
     // for whether the user is a technician.
     public void setIsTechnician(boolean isTechnician) {
         this.isTechnician = isTechnician;
+        save();
     }
 
+    // The setDirectory() method is a setter method, for the
+    // directory which holds the user's account.
+    void setDirectory(UserDirectory directory) {
+        this.directory = directory;
+    }
+
+    // The save() method saves the user's details in their
+    // account, after they have been changed.
+    private void save() {
+        UserDirectory current = directory;
+        if (current != null) {
+            current.save(this);
+        }
+    }
+
+    // The getTickets() method returns a snapshot of the tickets
+    // assigned to the user, which will not change even if tickets
+    // are assigned to or removed from the user afterwards.
     public List<Ticket> getTickets() {
+        return this.tickets.snapshot();
+    }
+
+    // The getTicketList() method returns the list the user's
+    // assigned tickets are stored in, for taking snapshots of.
+    TicketList getTicketList() {
         return this.tickets;
     }
 
+    // The getSubmittedTickets() method returns a snapshot
+    // of the tickets the user has submitted.
+    public List<Ticket> getSubmittedTickets() {
+        return this.submitted.snapshot();
+    }
+
+    // The getSubmittedList() method returns the list the
+    // user's submitted tickets are stored in.
+    TicketList getSubmittedList() {
+        return this.submitted;
+    }
+
+    // The getOpenQueue() method returns a technician's open
+    // tickets, in the order they should be worked on.
+    public TicketQueue getOpenQueue() {
+        return this.openQueue;
+    }
+
     public List<Ticket> getOpenTickets() {
         List<Ticket> openTickets =  new ArrayList<>();
         // Terrible
@@ -115,21 +196,14 @@ public class User {
     public void assignTicket(Ticket ticket) {
         tickets.add(ticket);
     }
-    public void forgetTicket(Ticket forgetMe) {
-
-        // TICKETS BEFORE REMOVE
-        // System.out.println("// TICKETS BEFORE REMOVE");
-        for (Ticket ticket : tickets) {
-            // System.out.println("Ticket: " + ticket.getDescription());
-        }
 
+    // The submitTicket() method records a ticket
+    // as one the user has submitted.
+    void submitTicket(Ticket ticket) {
+        submitted.add(ticket);
+    }
+    public void forgetTicket(Ticket forgetMe) {
         tickets.removeIf(e -> e.getUUID().equals(forgetMe.getUUID()));
-
-        // TICKETS AFTER REMOVE
-        // System.out.println("// TICKETS AFTER REMOVE");
-        for (Ticket ticket : tickets) {
-            // System.out.println("Ticket: " + ticket.getDescription());
-        }
     }
 
 }
@@ -0,0 +1,564 @@
+// The UserDirectory class stores every user account, looked up by
+// email. It is built to hold millions of accounts, most of which are
+// not being used at any one time, so rather than keeping a User
+// object for every account, each account is packed into a short
+// record of bytes in a shared page. A User object is only created
+// when an account is looked up, and is kept for as long as anything
+// else holds on to it, such as a session or a ticket, so everyone
+// working with the account shares the same User. Once nothing does,
+// the User is left for the garbage collector, and the account goes
+// back to being just its record. Any change to a User's details is
+// packed into a new record straight away, so nothing is lost when
+// the User goes.
+//
+// Emails are matched without regard to case. The accounts are split
+// into segments by a hash of their email, each with its own lock, so
+// lookups in different segments never wait for each other, and a
+// bloom filter answers most checks for an email that isn't taken
+// without looking in the directory at all. The bloom filter and the
+// pages start small, and grow as accounts are added, so a directory
+// with few accounts uses little memory.
+
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public class UserDirectory implements Iterable<User> {
+    // The number of accounts the bloom filter is first sized for.
+    // It is rebuilt twice the size whenever there are more.
+    private static final int DEFAULT_EXPECTED_ACCOUNTS = 1 << 10;
+
+    private static final int SEGMENT_BITS = 6;
+    private static final int SEGMENT_COUNT = 1 << SEGMENT_BITS;
+
+    // Records are packed into pages of this size, and a record
+    // can't be split across two pages. A segment's first page
+    // starts at the smaller size, and is doubled as it fills.
+    private static final int PAGE_SIZE = 1 << 16;
+    private static final int FIRST_PAGE_SIZE = 1 << 10;
+
+    // The bloom filter uses this many bits per expected
+    // account, and sets this many bits for each account,
+    // which gives roughly a 1% false positive rate.
+    private static final int BLOOM_BITS_PER_ACCOUNT = 10;
+    private static final int BLOOM_HASHES = 7;
+
+    private static final int FLAG_TECHNICIAN = 1;
+
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+    private volatile Bloom bloom;
+    private final AtomicInteger accounts = new AtomicInteger();
+
+    // The UserDirectory() method is the constructor for the
+    // UserDirectory class, starting small.
+    public UserDirectory() {
+        this(DEFAULT_EXPECTED_ACCOUNTS);
+    }
+
+    // This version of UserDirectory() sizes the bloom filter for
+    // the number of accounts expected, so it needn't be rebuilt
+    // while they are being added.
+    public UserDirectory(int expectedAccounts) {
+        this.bloom = new Bloom(Math.max(1, expectedAccounts));
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    // The normalize() method returns the form of an email
+    // accounts are stored under, ignoring case and any
+    // spaces around it.
+    public static String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // The contains() method checks whether there is
+    // an account with the email.
+    public boolean contains(String email) {
+        String key = normalize(email);
+        long hash = hash(key);
+        if (!bloom.mightContain(hash)) {
+            return false;
+        }
+        Segment segment = segmentFor(hash);
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        segment.lock.readLock().lock();
+        try {
+            return segment.find(hash, keyBytes) >= 0;
+        } finally {
+            segment.lock.readLock().unlock();
+        }
+    }
+
+    // The get() method returns the user with the email, or null
+    // if there is no such account. The same User is returned every
+    // time for the same account, for as long as anything holds it.
+    public User get(String email) {
+        String key = normalize(email);
+        long hash = hash(key);
+        if (!bloom.mightContain(hash)) {
+            return null;
+        }
+        Segment segment = segmentFor(hash);
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int slot;
+        segment.lock.readLock().lock();
+        try {
+            slot = segment.find(hash, keyBytes);
+            if (slot < 0) {
+                return null;
+            }
+            User user = segment.resident(slot);
+            if (user != null) {
+                return user;
+            }
+        } finally {
+            segment.lock.readLock().unlock();
+        }
+        // Nothing holds the account's User, so unpack it
+        segment.lock.writeLock().lock();
+        try {
+            // The table may have grown while the lock was let go
+            slot = segment.find(hash, keyBytes);
+            User user = segment.resident(slot);
+            if (user == null) {
+                user = segment.decode(segment.offsets[slot]);
+                segment.makeResident(slot, user, this);
+            }
+            return user;
+        } finally {
+            segment.lock.writeLock().unlock();
+        }
+    }
+
+    // The add() method adds a new account for the user, and
+    // returns false, without adding it, if there is already an
+    // account with their email. The user is the account's User
+    // from then on, so this is used for users who are already
+    // being worked with, such as technicians.
+    public boolean add(User user) {
+        return add(user, true);
+    }
+
+    // The addAccount() method adds a new account which no one is
+    // using yet, such as one just signed up for. Only the packed
+    // record is kept, until the account is first looked up. It
+    // returns false if there is already an account with the email.
+    public boolean addAccount(String email, String firstName, String lastName, String phoneNumber,
+            String passwordHash) {
+        return add(new User(email, firstName, lastName, phoneNumber, passwordHash, false), false);
+    }
+
+    private boolean add(User user, boolean resident) {
+        String key = normalize(user.getEmail());
+        long hash = hash(key);
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        Segment segment = segmentFor(hash);
+        segment.lock.writeLock().lock();
+        try {
+            Bloom current = bloom;
+            if (current.mightContain(hash) && segment.find(hash, keyBytes) >= 0) {
+                return false;
+            }
+            user.setEmail(key);
+            // Set the bloom filter first, so anyone who can
+            // find the account will also get past the filter.
+            // It can't be replaced while a segment is locked.
+            current.add(hash);
+            int slot = segment.insert(hash, segment.encode(keyBytes, user));
+            if (resident) {
+                segment.makeResident(slot, user, this);
+            }
+        } finally {
+            segment.lock.writeLock().unlock();
+        }
+        if (accounts.incrementAndGet() > bloom.capacity) {
+            growBloom();
+        }
+        return true;
+    }
+
+    // The save() method packs a user's details into a new record
+    // for their account, after they have changed. The old record
+    // is left where it is, as details change rarely.
+    void save(User user) {
+        String key = user.getEmail();
+        long hash = hash(key);
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        Segment segment = segmentFor(hash);
+        segment.lock.writeLock().lock();
+        try {
+            int slot = segment.find(hash, keyBytes);
+            if (slot >= 0) {
+                segment.offsets[slot] = segment.encode(keyBytes, user);
+            }
+        } finally {
+            segment.lock.writeLock().unlock();
+        }
+    }
+
+    // The growBloom() method replaces the bloom filter with one
+    // big enough for every account, built from the hashes the
+    // segments keep. Every segment is locked, so no account is
+    // added while it is being built.
+    private void growBloom() {
+        for (Segment segment : segments) {
+            segment.lock.writeLock().lock();
+        }
+        try {
+            int count = accounts.get();
+            int capacity = bloom.capacity;
+            if (count <= capacity) {
+                // Another thread has already grown it
+                return;
+            }
+            while (capacity < count) {
+                capacity *= 2;
+            }
+            Bloom grown = new Bloom(capacity);
+            for (Segment segment : segments) {
+                for (long hash : segment.hashes) {
+                    if (hash != 0) {
+                        grown.add(hash);
+                    }
+                }
+            }
+            bloom = grown;
+        } finally {
+            for (Segment segment : segments) {
+                segment.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    // The size() method returns the number of accounts.
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            segment.lock.readLock().lock();
+            try {
+                size += segment.count;
+            } finally {
+                segment.lock.readLock().unlock();
+            }
+        }
+        return size;
+    }
+
+    // The iterator() method walks through every account, a
+    // segment at a time. Accounts whose User nothing holds are
+    // unpacked into a temporary User just for reading, so
+    // changes made to it are not saved.
+    @Override
+    public Iterator<User> iterator() {
+        return new Iterator<User>() {
+            private int segmentIndex;
+            private List<User> current = new ArrayList<>();
+            private int position;
+
+            @Override
+            public boolean hasNext() {
+                while (position == current.size()) {
+                    if (segmentIndex == SEGMENT_COUNT) {
+                        return false;
+                    }
+                    current = segments[segmentIndex++].users();
+                    position = 0;
+                }
+                return true;
+            }
+
+            @Override
+            public User next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.get(position++);
+            }
+        };
+    }
+
+    // The hash() method returns a 64 bit hash of an email,
+    // which is never 0, as 0 marks an empty slot.
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        // Spread the bits, so every bit depends on every character
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash == 0 ? 1 : hash;
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> (64 - SEGMENT_BITS))];
+    }
+
+    // The Bloom class is a bloom filter sized for a number of
+    // accounts. It is probed at BLOOM_HASHES positions, worked
+    // out from the two halves of the hash.
+    private static final class Bloom {
+        private final int capacity;
+        private final AtomicLongArray bits;
+        private final long mask;
+
+        private Bloom(int capacity) {
+            long size = Long.highestOneBit(Math.max(64L, (long) capacity * BLOOM_BITS_PER_ACCOUNT - 1)) << 1;
+            this.capacity = capacity;
+            this.bits = new AtomicLongArray((int) (size >>> 6));
+            this.mask = size - 1;
+        }
+
+        private boolean mightContain(long hash) {
+            long step = (hash >>> 32) | 1;
+            for (int i = 0; i < BLOOM_HASHES; i++) {
+                long bit = (hash + i * step) & mask;
+                if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void add(long hash) {
+            long step = (hash >>> 32) | 1;
+            for (int i = 0; i < BLOOM_HASHES; i++) {
+                long bit = (hash + i * step) & mask;
+                int word = (int) (bit >>> 6);
+                long bitMask = 1L << bit;
+                long old;
+                do {
+                    old = bits.get(word);
+                } while ((old & bitMask) == 0 && !bits.compareAndSet(word, old, old | bitMask));
+            }
+        }
+    }
+
+    // The Resident class is how a segment holds an account's User,
+    // without stopping it being garbage collected.
+    private static final class Resident extends WeakReference<User> {
+        private Resident(User user) {
+            super(user);
+        }
+    }
+
+    // The Segment class holds a share of the accounts, in an open
+    // addressing hash table pointing into pages of packed records.
+    // Its arrays must only be used while holding its lock.
+    private static final class Segment {
+        private static final int INITIAL_CAPACITY = 16;
+
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        // Each slot holds an account's hash (0 if empty), where its
+        // record is, and its User while anything holds it
+        private long[] hashes = new long[INITIAL_CAPACITY];
+        private int[] offsets = new int[INITIAL_CAPACITY];
+        private Resident[] residents = new Resident[INITIAL_CAPACITY];
+        private int count;
+
+        private byte[][] pages = new byte[1][];
+        private int pageCount;
+        private int pagePosition;
+
+        // The find() method returns the slot of the account with the
+        // email, or -1 if there is no such account.
+        private int find(long hash, byte[] key) {
+            int mask = hashes.length - 1;
+            for (int slot = (int) hash & mask; hashes[slot] != 0; slot = (slot + 1) & mask) {
+                if (hashes[slot] == hash && emailMatches(offsets[slot], key)) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        // The insert() method adds an account,
+        // and returns the slot it was put in.
+        private int insert(long hash, int offset) {
+            if ((count + 1) * 4 > hashes.length * 3) {
+                grow();
+            }
+            int mask = hashes.length - 1;
+            int slot = (int) hash & mask;
+            while (hashes[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            hashes[slot] = hash;
+            offsets[slot] = offset;
+            count++;
+            return slot;
+        }
+
+        // The resident() method returns the User of the account in
+        // a slot, or null if nothing is holding one any more.
+        private User resident(int slot) {
+            Resident resident = residents[slot];
+            return resident == null ? null : resident.get();
+        }
+
+        private void makeResident(int slot, User user, UserDirectory directory) {
+            user.setDirectory(directory);
+            residents[slot] = new Resident(user);
+        }
+
+        // The grow() method doubles the table, placing every account
+        // again using its stored hash, without reading the records.
+        // Residents whose User has been collected are dropped.
+        private void grow() {
+            long[] oldHashes = hashes;
+            int[] oldOffsets = offsets;
+            Resident[] oldResidents = residents;
+            int capacity = oldHashes.length * 2;
+            hashes = new long[capacity];
+            offsets = new int[capacity];
+            residents = new Resident[capacity];
+            int mask = capacity - 1;
+            for (int i = 0; i < oldHashes.length; i++) {
+                if (oldHashes[i] != 0) {
+                    int slot = (int) oldHashes[i] & mask;
+                    while (hashes[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    hashes[slot] = oldHashes[i];
+                    offsets[slot] = oldOffsets[i];
+                    if (oldResidents[i] != null && oldResidents[i].get() != null) {
+                        residents[slot] = oldResidents[i];
+                    }
+                }
+            }
+        }
+
+        // The encode() method packs an account into the pages, and
+        // returns where its record starts. A record is a flags byte,
+        // followed by the email, first name, last name, phone number
+        // and password hash, each as a length and then UTF-8 bytes.
+        private int encode(byte[] email, User user) {
+            byte[][] fields = { email, bytes(user.getFirstName()), bytes(user.getLastName()),
+                    bytes(user.getPhoneNumber()), bytes(user.getPasswordHash()) };
+            int length = 1;
+            for (byte[] field : fields) {
+                length += varIntLength(field.length) + field.length;
+            }
+            if (length > PAGE_SIZE) {
+                throw new IllegalArgumentException("The account details are too long to store");
+            }
+            if (pageCount == 0 || PAGE_SIZE - pagePosition < length) {
+                if (pageCount == pages.length) {
+                    pages = Arrays.copyOf(pages, pageCount * 2);
+                }
+                // Only the first page starts small, as a segment
+                // which fills one page is likely to fill more
+                int size = pageCount == 0 ? Math.max(FIRST_PAGE_SIZE, length) : PAGE_SIZE;
+                pages[pageCount++] = new byte[size];
+                pagePosition = 0;
+            } else if (pages[pageCount - 1].length - pagePosition < length) {
+                // Records keep their offsets, as the page stays in place
+                int size = Math.min(PAGE_SIZE, Math.max(pages[pageCount - 1].length * 2, pagePosition + length));
+                pages[pageCount - 1] = Arrays.copyOf(pages[pageCount - 1], size);
+            }
+            int offset = (pageCount - 1) * PAGE_SIZE + pagePosition;
+            byte[] page = pages[pageCount - 1];
+            page[pagePosition++] = (byte) (user.getIsTechnician() ? FLAG_TECHNICIAN : 0);
+            for (byte[] field : fields) {
+                int value = field.length;
+                while ((value & ~0x7F) != 0) {
+                    page[pagePosition++] = (byte) ((value & 0x7F) | 0x80);
+                    value >>>= 7;
+                }
+                page[pagePosition++] = (byte) value;
+                System.arraycopy(field, 0, page, pagePosition, field.length);
+                pagePosition += field.length;
+            }
+            return offset;
+        }
+
+        // The decode() method unpacks the record at the offset
+        // into a new User.
+        private User decode(int offset) {
+            byte[] page = pages[offset / PAGE_SIZE];
+            int[] position = { offset % PAGE_SIZE };
+            boolean technician = (page[position[0]++] & FLAG_TECHNICIAN) != 0;
+            String email = readString(page, position);
+            String firstName = readString(page, position);
+            String lastName = readString(page, position);
+            String phoneNumber = readString(page, position);
+            String passwordHash = readString(page, position);
+            return new User(email, firstName, lastName, phoneNumber, passwordHash, technician);
+        }
+
+        // The emailMatches() method compares the email in the
+        // record at the offset to a key, without unpacking it.
+        private boolean emailMatches(int offset, byte[] key) {
+            byte[] page = pages[offset / PAGE_SIZE];
+            int position = offset % PAGE_SIZE + 1;
+            int length = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = page[position++];
+                length |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return length == key.length
+                    && Arrays.equals(page, position, position + length, key, 0, key.length);
+        }
+
+        // The users() method returns every account in the segment,
+        // using the account's User if anything holds it.
+        private List<User> users() {
+            lock.readLock().lock();
+            try {
+                List<User> users = new ArrayList<>(count);
+                for (int i = 0; i < hashes.length; i++) {
+                    if (hashes[i] != 0) {
+                        User user = resident(i);
+                        users.add(user != null ? user : decode(offsets[i]));
+                    }
+                }
+                return users;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private static byte[] bytes(String value) {
+            return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        }
+
+        private static int varIntLength(int value) {
+            int length = 1;
+            while ((value & ~0x7F) != 0) {
+                value >>>= 7;
+                length++;
+            }
+            return length;
+        }
+
+        private static String readString(byte[] page, int[] position) {
+            int length = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = page[position[0]++];
+                length |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            String value = new String(page, position[0], length, StandardCharsets.UTF_8);
+            position[0] += length;
+            return value;
+        }
+    }
+}
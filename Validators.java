@@ -0,0 +1,214 @@
+// The Validators class checks the details people type in, such as
+// emails, phone numbers, passwords and dates. Each check is written
+// by hand as a single pass over the input, rather than a regular
+// expression, so it takes the same short time however the input is
+// written, creates no objects, and can be used from many threads.
+// The rules match the regular expressions they replace.
+
+import java.time.LocalDate;
+
+public final class Validators {
+    // The shortest password allowed.
+    static final int MIN_PASSWORD_LENGTH = 20;
+
+    // The longest phone number which could possibly be valid,
+    // a '+' followed by four groups of four digits, with a
+    // space between each group.
+    private static final int MAX_PHONE_LENGTH = 20;
+
+    private Validators() {
+    }
+
+    // The isValidEmail() method checks an email has letters and
+    // numbers, optionally split up by single dots, on both sides
+    // of a single '@', with at least two characters after it,
+    // and no dot at the start or end of either side.
+    public static boolean isValidEmail(CharSequence email) {
+        int at = -1;
+        for (int i = 0; i < email.length(); i++) {
+            if (email.charAt(i) == '@') {
+                if (at >= 0) {
+                    return false;
+                }
+                at = i;
+            }
+        }
+        return at > 0 && isDottedWord(email, 0, at, 1) && isDottedWord(email, at + 1, email.length(), 2);
+    }
+
+    // The isDottedWord() method checks a range is letters and
+    // numbers split up by single dots, starting and ending with
+    // a letter or number, and at least a minimum length.
+    private static boolean isDottedWord(CharSequence text, int from, int to, int minLength) {
+        if (to - from < minLength) {
+            return false;
+        }
+        boolean lastWasDot = true;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c == '.') {
+                if (lastWasDot) {
+                    return false;
+                }
+                lastWasDot = true;
+            } else if (isAsciiLetterOrDigit(c)) {
+                lastWasDot = false;
+            } else {
+                return false;
+            }
+        }
+        return !lastWasDot;
+    }
+
+    // The isValidPhone() method checks a phone number is an optional
+    // '+', then three or four groups of two to four digits, with an
+    // optional single space after each of the first three groups.
+    public static boolean isValidPhone(CharSequence phone) {
+        int length = phone.length();
+        if (length > MAX_PHONE_LENGTH) {
+            return false;
+        }
+        int start = length > 0 && phone.charAt(0) == '+' ? 1 : 0;
+        // Each bit is a position the next group could start at,
+        // as the digits could be grouped in more than one way
+        long starts = 1L << start;
+        for (int group = 1; group <= 4; group++) {
+            long ends = 0;
+            for (int from = start; from < length; from++) {
+                if ((starts & (1L << from)) == 0) {
+                    continue;
+                }
+                for (int digits = 1; digits <= 4 && from + digits <= length; digits++) {
+                    if (!isAsciiDigit(phone.charAt(from + digits - 1))) {
+                        break;
+                    }
+                    if (digits >= 2) {
+                        ends |= 1L << (from + digits);
+                    }
+                }
+            }
+            if (group == 4) {
+                return (ends & (1L << length)) != 0;
+            }
+            long spaced = ends;
+            for (int at = start; at < length; at++) {
+                if ((ends & (1L << at)) != 0 && phone.charAt(at) == ' ') {
+                    spaced |= 1L << (at + 1);
+                }
+            }
+            // The fourth group is optional
+            if (group == 3 && (spaced & (1L << length)) != 0) {
+                return true;
+            }
+            starts = spaced;
+        }
+        return false;
+    }
+
+    // The isValidPassword() method checks a password is at least
+    // MIN_PASSWORD_LENGTH letters and numbers, with at least one
+    // lowercase letter, one uppercase letter and one number.
+    public static boolean isValidPassword(CharSequence password) {
+        if (password.length() < MIN_PASSWORD_LENGTH) {
+            return false;
+        }
+        boolean lower = false, upper = false, digit = false;
+        for (int i = 0; i < password.length(); i++) {
+            char c = password.charAt(i);
+            if (c >= 'a' && c <= 'z') {
+                lower = true;
+            } else if (c >= 'A' && c <= 'Z') {
+                upper = true;
+            } else if (isAsciiDigit(c)) {
+                digit = true;
+            } else {
+                return false;
+            }
+        }
+        return lower && upper && digit;
+    }
+
+    // The isValidDate() method checks a date is written
+    // as dd/mm/yyyy, and is a real day.
+    public static boolean isValidDate(CharSequence date) {
+        return parseDateValue(date) >= 0;
+    }
+
+    // The parseDate() method reads a date written as
+    // dd/mm/yyyy, or returns null if it isn't valid.
+    public static LocalDate parseDate(CharSequence date) {
+        int value = parseDateValue(date);
+        if (value < 0) {
+            return null;
+        }
+        return LocalDate.of(value / 10000, value / 100 % 100, value % 100);
+    }
+
+    // The parseDateValue() method reads a date written as
+    // dd/mm/yyyy into a single number, yyyymmdd, or returns
+    // -1 if it isn't a valid date. The day and month may be
+    // written with a single digit, as before.
+    private static int parseDateValue(CharSequence date) {
+        int length = date.length();
+        int position = 0;
+        int day = 0, month = 0, year = 0;
+        for (int part = 0; part < 3; part++) {
+            // The year must have four digits
+            int minDigits = part == 2 ? 4 : 1;
+            int maxDigits = part == 2 ? 4 : 2;
+            int value = 0, digits = 0;
+            while (position < length && isAsciiDigit(date.charAt(position))) {
+                if (++digits > maxDigits) {
+                    return -1;
+                }
+                value = value * 10 + (date.charAt(position++) - '0');
+            }
+            if (digits < minDigits) {
+                return -1;
+            }
+            if (part == 0) {
+                day = value;
+            } else if (part == 1) {
+                month = value;
+            } else {
+                year = value;
+            }
+            if (part < 2) {
+                if (position >= length || date.charAt(position) != '/') {
+                    return -1;
+                }
+                position++;
+            }
+        }
+        if (position != length) {
+            return -1;
+        }
+        if (year < 1 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+            return -1;
+        }
+        return year * 10000 + month * 100 + day;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+                return leap ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static boolean isAsciiDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isAsciiLetterOrDigit(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || isAsciiDigit(c);
+    }
+}